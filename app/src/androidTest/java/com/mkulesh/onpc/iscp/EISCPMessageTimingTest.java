@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2019. Mikhail Kulesh
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details. You should have received a copy of the GNU General
+ * Public License along with this program.
+ */
+
+package com.mkulesh.onpc.iscp;
+
+import android.support.test.runner.AndroidJUnit4;
+
+import com.mkulesh.onpc.utils.Timing;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertEquals;
+
+@RunWith(AndroidJUnit4.class)
+public class EISCPMessageTimingTest
+{
+    private final EISCPMessage timeInfo = new EISCPMessage('1', "NTM", "00:01:02/00:03:04");
+
+    @Test
+    public void decodeFrame() throws Exception
+    {
+        final ByteBuffer b = ByteBuffer.allocate(timeInfo.getEncodedSize());
+        timeInfo.encodeTo(b);
+        final byte[] frame = b.array();
+        final int headerSize = EISCPMessage.getHeaderSize(frame, 0, frame.length);
+        final int dataSize = EISCPMessage.getDataSize(frame, 0, frame.length);
+        Timing.assertBudget("EISCPMessage decoding", 20000, 100000, new Timing.Operation()
+        {
+            @Override
+            public Object run() throws Exception
+            {
+                final EISCPMessage raw = new EISCPMessage(1, frame, 0, headerSize, dataSize);
+                raw.getCodeId();
+                return raw.getParameters();
+            }
+        });
+        final EISCPMessage raw = new EISCPMessage(1, frame, 0, headerSize, dataSize);
+        assertEquals("NTM", raw.getCode());
+        assertEquals("00:01:02/00:03:04", raw.getParameters());
+    }
+
+    @Test
+    public void encodeFrame() throws Exception
+    {
+        final ByteBuffer b = ByteBuffer.allocate(timeInfo.getEncodedSize());
+        Timing.assertBudget("EISCPMessage encoding", 20000, 100000, new Timing.Operation()
+        {
+            @Override
+            public Object run()
+            {
+                b.clear();
+                timeInfo.encodeTo(b);
+                return b;
+            }
+        });
+        assertEquals(timeInfo.getEncodedSize(), b.position());
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2019. Mikhail Kulesh
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details. You should have received a copy of the GNU General
+ * Public License along with this program.
+ */
+
+package com.mkulesh.onpc.iscp;
+
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+@RunWith(AndroidJUnit4.class)
+public class MessageDecoderTest
+{
+    private final List<EISCPMessage> messages = new ArrayList<>();
+    private final ByteBuffer buffer = ByteBuffer.allocate(4 * 1024);
+    private final MessageDecoder decoder = new MessageDecoder(new MessageDecoder.Listener()
+    {
+        @Override
+        public void onMessage(EISCPMessage raw)
+        {
+            messages.add(raw);
+        }
+    });
+
+    @Test
+    public void severalFramesInOneRead()
+    {
+        receive(concat(frame("PWR", "01"), frame("MVL", "2A"), frame("NTM", "00:01:02/00:03:04")));
+        assertMessages("PWR", "01", "MVL", "2A", "NTM", "00:01:02/00:03:04");
+        assertEquals(0, buffer.position());
+    }
+
+    @Test
+    public void splitHeader()
+    {
+        final byte[] f = frame("PWR", "01");
+        receive(slice(f, 0, 6));
+        assertMessages();
+        receive(slice(f, 6, f.length));
+        assertMessages("PWR", "01");
+    }
+
+    @Test
+    public void splitPayload()
+    {
+        final byte[] f = frame("NTI", "Title of the track");
+        receive(slice(f, 0, f.length - 5));
+        assertMessages();
+        receive(concat(slice(f, f.length - 5, f.length), frame("PWR", "00")));
+        assertMessages("NTI", "Title of the track", "PWR", "00");
+    }
+
+    @Test
+    public void garbageBeforeMessageStart()
+    {
+        receive(concat("xyzIS".getBytes(), frame("PWR", "01")));
+        assertMessages("PWR", "01");
+    }
+
+    @Test
+    public void corruptHeaderIsSkipped()
+    {
+        final byte[] corrupt = frame("PWR", "01");
+        corrupt[8] = (byte) 0x80; // data size with the high bit set
+        receive(concat(corrupt, frame("MVL", "2A")));
+        assertMessages("MVL", "2A");
+    }
+
+    @Test
+    public void oversizedFrameIsSkipped()
+    {
+        final byte[] large = frame("PWR", "01");
+        ByteBuffer.wrap(large).putInt(8, MessageDecoder.MAX_FRAME_SIZE);
+        receive(concat(large, frame("MVL", "2A")));
+        assertMessages("MVL", "2A");
+    }
+
+    private static byte[] frame(final String code, final String parameters)
+    {
+        final EISCPMessage m = new EISCPMessage('1', code, parameters);
+        final ByteBuffer b = ByteBuffer.allocate(m.getEncodedSize());
+        m.encodeTo(b);
+        return b.array();
+    }
+
+    private static byte[] slice(final byte[] bytes, final int from, final int to)
+    {
+        final byte[] res = new byte[to - from];
+        System.arraycopy(bytes, from, res, 0, res.length);
+        return res;
+    }
+
+    private static byte[] concat(final byte[]... parts)
+    {
+        final ByteBuffer b = ByteBuffer.allocate(4 * 1024);
+        for (byte[] p : parts)
+        {
+            b.put(p);
+        }
+        return slice(b.array(), 0, b.position());
+    }
+
+    /**
+     * Simulates a socket read like MessageChannel does
+     */
+    private void receive(final byte[] bytes)
+    {
+        buffer.put(bytes);
+        buffer.flip();
+        decoder.decode(buffer);
+        buffer.compact();
+    }
+
+    private void assertMessages(final String... codeAndParameters)
+    {
+        assertEquals(codeAndParameters.length / 2, messages.size());
+        for (int i = 0; i < messages.size(); i++)
+        {
+            assertEquals(codeAndParameters[2 * i], messages.get(i).getCode());
+            assertEquals(codeAndParameters[2 * i + 1], messages.get(i).getParameters());
+        }
+    }
+}
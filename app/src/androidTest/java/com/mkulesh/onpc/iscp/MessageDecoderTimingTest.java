@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2019. Mikhail Kulesh
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details. You should have received a copy of the GNU General
+ * Public License along with this program.
+ */
+
+package com.mkulesh.onpc.iscp;
+
+import android.support.test.runner.AndroidJUnit4;
+
+import com.mkulesh.onpc.utils.Timing;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertEquals;
+
+@RunWith(AndroidJUnit4.class)
+public class MessageDecoderTimingTest
+{
+    private final static int FRAMES = 32;
+
+    private int decoded = 0;
+    private final MessageDecoder decoder = new MessageDecoder(new MessageDecoder.Listener()
+    {
+        @Override
+        public void onMessage(EISCPMessage raw)
+        {
+            decoded++;
+        }
+    });
+
+    /**
+     * The work done by the event loop of MessageChannel after a wake up with a full read
+     */
+    @Test
+    public void decodeRead() throws Exception
+    {
+        final ByteBuffer read = ByteBuffer.allocate(4 * 1024);
+        for (int i = 0; i < FRAMES; i++)
+        {
+            new EISCPMessage('1', "NTM", "00:01:02/00:03:04").encodeTo(read);
+        }
+        read.flip();
+        final ByteBuffer buffer = ByteBuffer.allocate(read.capacity());
+        Timing.assertBudget("MessageDecoder.decode of " + FRAMES + " frames", 1000000, 10000, new Timing.Operation()
+        {
+            @Override
+            public Object run()
+            {
+                decoded = 0;
+                buffer.put(read.duplicate());
+                buffer.flip();
+                decoder.decode(buffer);
+                buffer.compact();
+                return buffer;
+            }
+        });
+        assertEquals(FRAMES, decoded);
+        assertEquals(0, buffer.position());
+    }
+}
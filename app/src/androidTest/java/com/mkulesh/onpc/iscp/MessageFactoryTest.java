@@ -0,0 +1,51 @@
+/*
+ * Copyright (C) 2019. Mikhail Kulesh
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details. You should have received a copy of the GNU General
+ * Public License along with this program.
+ */
+
+package com.mkulesh.onpc.iscp;
+
+import android.support.test.runner.AndroidJUnit4;
+
+import com.mkulesh.onpc.iscp.messages.MessageFactory;
+import com.mkulesh.onpc.iscp.messages.SpeakerACommandMsg;
+import com.mkulesh.onpc.iscp.messages.SpeakerBCommandMsg;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class MessageFactoryTest
+{
+    @Test
+    public void speakerCommandsOfMainZone() throws Exception
+    {
+        assertZone("SPA", SpeakerACommandMsg.class, 0);
+        assertZone("SPB", SpeakerBCommandMsg.class, 0);
+    }
+
+    @Test
+    public void speakerCommandsOfZone2() throws Exception
+    {
+        assertZone("ZPA", SpeakerACommandMsg.class, 1);
+        assertZone("ZPB", SpeakerBCommandMsg.class, 1);
+    }
+
+    private static void assertZone(final String code, final Class<?> type, int zoneIndex) throws Exception
+    {
+        final ISCPMessage msg = MessageFactory.create(new EISCPMessage('1', code, "01"));
+        assertTrue(code, type.isInstance(msg));
+        assertEquals(code, zoneIndex, ((ZonedMessage) msg).zoneIndex);
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2019. Mikhail Kulesh
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details. You should have received a copy of the GNU General
+ * Public License along with this program.
+ */
+
+package com.mkulesh.onpc.iscp;
+
+import android.support.test.runner.AndroidJUnit4;
+
+import com.mkulesh.onpc.iscp.messages.MessageFactory;
+import com.mkulesh.onpc.iscp.messages.TimeInfoMsg;
+import com.mkulesh.onpc.utils.Timing;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class MessageFactoryTimingTest
+{
+    // the messages received most often while playing
+    private final EISCPMessage[] messages = new EISCPMessage[]{
+            new EISCPMessage('1', "NTM", "00:01:02/00:03:04"),
+            new EISCPMessage('1', "MVL", "2A"),
+            new EISCPMessage('1', "ZVL", "1F"),
+            new EISCPMessage('1', "PWR", "01"),
+            new EISCPMessage('1', "SLI", "2B"),
+            new EISCPMessage('1', "LMD", "00")
+    };
+
+    @Test
+    public void create() throws Exception
+    {
+        Timing.assertBudget("MessageFactory.create of " + messages.length + " messages", 100000, 20000,
+                new Timing.Operation()
+                {
+                    @Override
+                    public Object run() throws Exception
+                    {
+                        ISCPMessage msg = null;
+                        for (EISCPMessage raw : messages)
+                        {
+                            msg = MessageFactory.create(raw);
+                        }
+                        return msg;
+                    }
+                });
+        assertTrue(MessageFactory.create(messages[0]) instanceof TimeInfoMsg);
+    }
+}
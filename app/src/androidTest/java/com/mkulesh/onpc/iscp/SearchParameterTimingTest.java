@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2019. Mikhail Kulesh
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details. You should have received a copy of the GNU General
+ * Public License along with this program.
+ */
+
+package com.mkulesh.onpc.iscp;
+
+import android.support.test.runner.AndroidJUnit4;
+
+import com.mkulesh.onpc.iscp.messages.ListeningModeMsg;
+import com.mkulesh.onpc.iscp.messages.PlayStatusMsg;
+import com.mkulesh.onpc.utils.Timing;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertSame;
+
+@RunWith(AndroidJUnit4.class)
+public class SearchParameterTimingTest
+{
+    private final static ListeningModeMsg.Mode[] modes = ListeningModeMsg.Mode.values();
+    private final static PlayStatusMsg.PlayStatus[] playStatuses = PlayStatusMsg.PlayStatus.values();
+
+    @Test
+    public void stringParameter() throws Exception
+    {
+        Timing.assertBudget("searchParameter(String)", 5000, 100000, new Timing.Operation()
+        {
+            @Override
+            public Object run()
+            {
+                // the last value is the worst case of a linear search
+                return ISCPMessage.searchParameter("UP", modes, ListeningModeMsg.Mode.MODE_00);
+            }
+        });
+        assertSame(ListeningModeMsg.Mode.MODE_A7, ISCPMessage.searchParameter("A7", modes, null));
+        assertSame(ListeningModeMsg.Mode.MODE_A7, ISCPMessage.searchParameter("a7", modes, null));
+        assertSame(ListeningModeMsg.Mode.MODE_00, ISCPMessage.searchParameter("ZZ", modes, ListeningModeMsg.Mode.MODE_00));
+    }
+
+    @Test
+    public void charParameter() throws Exception
+    {
+        Timing.assertBudget("searchParameter(Character)", 5000, 100000, new Timing.Operation()
+        {
+            @Override
+            public Object run()
+            {
+                return ISCPMessage.searchParameter('E', playStatuses, PlayStatusMsg.PlayStatus.STOP);
+            }
+        });
+        assertSame(PlayStatusMsg.PlayStatus.PAUSE, ISCPMessage.searchParameter('p', playStatuses, null));
+        assertSame(PlayStatusMsg.PlayStatus.PLAY, ISCPMessage.searchParameter('P', playStatuses, null));
+    }
+}
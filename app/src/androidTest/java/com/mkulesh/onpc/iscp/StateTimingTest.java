@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2019. Mikhail Kulesh
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details. You should have received a copy of the GNU General
+ * Public License along with this program.
+ */
+
+package com.mkulesh.onpc.iscp;
+
+import android.support.test.runner.AndroidJUnit4;
+
+import com.mkulesh.onpc.iscp.messages.MessageFactory;
+import com.mkulesh.onpc.iscp.messages.XmlListItemMsg;
+import com.mkulesh.onpc.utils.Timing;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class StateTimingTest
+{
+    private final State state = new State(0);
+
+    @Test
+    public void update() throws Exception
+    {
+        // every message changes the state, so that the handlers do the whole work
+        final ISCPMessage[] messages = new ISCPMessage[]{
+                MessageFactory.create(new EISCPMessage('1', "NTM", "00:01:02/00:03:04")),
+                MessageFactory.create(new EISCPMessage('1', "MVL", "2A")),
+                MessageFactory.create(new EISCPMessage('1', "NTM", "00:02:02/00:04:04")),
+                MessageFactory.create(new EISCPMessage('1', "MVL", "2B"))
+        };
+        Timing.assertBudget("State.update of " + messages.length + " messages", 100000, 20000,
+                new Timing.Operation()
+                {
+                    @Override
+                    public Object run()
+                    {
+                        int changes = State.CHANGE_NONE;
+                        for (ISCPMessage msg : messages)
+                        {
+                            changes |= state.update(msg);
+                        }
+                        return changes;
+                    }
+                });
+        assertTrue(state.update(messages[0]) != State.CHANGE_NONE);
+    }
+
+    /**
+     * Every publication to the UI takes a snapshot: its cost shall not grow with the media list
+     */
+    @Test
+    public void snapshot() throws Exception
+    {
+        final List<XmlListItemMsg> items = new ArrayList<>();
+        for (int i = 0; i < 1000; i++)
+        {
+            items.add(new XmlListItemMsg(i, 1, "Track " + i, XmlListItemMsg.Icon.MUSIC, true));
+        }
+        state.mediaItems = Collections.unmodifiableList(items);
+        Timing.assertBudget("State.snapshot", 20000, 20000, new Timing.Operation()
+        {
+            @Override
+            public Object run()
+            {
+                return state.snapshot();
+            }
+        });
+        assertSame(state.mediaItems, state.snapshot().mediaItems);
+    }
+}
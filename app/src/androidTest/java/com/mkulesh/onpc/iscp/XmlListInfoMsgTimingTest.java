@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2019. Mikhail Kulesh
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details. You should have received a copy of the GNU General
+ * Public License along with this program.
+ */
+
+package com.mkulesh.onpc.iscp;
+
+import android.support.test.runner.AndroidJUnit4;
+
+import com.mkulesh.onpc.iscp.messages.MessageFactory;
+import com.mkulesh.onpc.iscp.messages.XmlListInfoMsg;
+import com.mkulesh.onpc.iscp.messages.XmlListItemMsg;
+import com.mkulesh.onpc.utils.Timing;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+@RunWith(AndroidJUnit4.class)
+public class XmlListInfoMsgTimingTest
+{
+    private final static int ITEMS = 100;
+
+    @Test
+    public void parseXml() throws Exception
+    {
+        final StringBuilder xml = new StringBuilder("X0001S000")
+                .append("<?xml version=\"1.0\" encoding=\"utf-8\"?><response status=\"ok\">")
+                .append("<items offset=\"100\" totalitems=\"1000\">");
+        for (int i = 0; i < ITEMS; i++)
+        {
+            xml.append("<item iconid=\"29\" title=\"Track ").append(i)
+                    .append("\" url=\"\" selectable=\"1\" icontype=\"S\"/>");
+        }
+        xml.append("</items></response>");
+        final XmlListInfoMsg msg = (XmlListInfoMsg) MessageFactory.create(
+                new EISCPMessage('1', XmlListInfoMsg.CODE, xml.toString()));
+        final List<XmlListItemMsg> items = new ArrayList<>(ITEMS);
+        Timing.assertBudget("XmlListInfoMsg.parseXml of " + ITEMS + " items", 20000000, 500,
+                new Timing.Operation()
+                {
+                    @Override
+                    public Object run() throws Exception
+                    {
+                        return msg.parseXml(items, 2);
+                    }
+                });
+        assertEquals(ITEMS, items.size());
+        assertEquals(100, msg.getItemsOffset());
+        assertEquals(1000, msg.getTotalItems());
+    }
+}
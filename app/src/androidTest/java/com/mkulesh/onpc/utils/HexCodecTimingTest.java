@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2019. Mikhail Kulesh
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details. You should have received a copy of the GNU General
+ * Public License along with this program.
+ */
+
+package com.mkulesh.onpc.utils;
+
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+
+@RunWith(AndroidJUnit4.class)
+public class HexCodecTimingTest
+{
+    @Test
+    public void decode() throws Exception
+    {
+        Timing.assertBudget("HexCodec.decode", 2000, 100000, new Timing.Operation()
+        {
+            @Override
+            public Object run()
+            {
+                return HexCodec.decode("L00a1020004001E", 1, 5);
+            }
+        });
+        assertEquals(0xA1, HexCodec.decode("L00a1020004001E", 1, 5));
+        assertEquals(0x1E, HexCodec.decode("1e"));
+    }
+
+    /**
+     * A raw JacketArtMsg carries a part of the cover image as hex encoded bytes
+     */
+    @Test
+    public void decodeBytes() throws Exception
+    {
+        final StringBuilder chunk = new StringBuilder(2048);
+        for (int i = 0; i < 1024; i++)
+        {
+            HexCodec.append(chunk, i, 2);
+        }
+        final byte[] bytes = new byte[1024];
+        Timing.assertBudget("HexCodec.decodeBytes of 1 KB", 200000, 10000, new Timing.Operation()
+        {
+            @Override
+            public Object run()
+            {
+                return HexCodec.decodeBytes(chunk, 0, chunk.length(), bytes, 0);
+            }
+        });
+        assertEquals((byte) 0xFF, bytes[255]);
+    }
+
+    @Test
+    public void append() throws Exception
+    {
+        final StringBuilder sb = new StringBuilder(4);
+        Timing.assertBudget("HexCodec.append", 2000, 100000, new Timing.Operation()
+        {
+            @Override
+            public Object run()
+            {
+                sb.setLength(0);
+                return HexCodec.append(sb, 0x1E, 4);
+            }
+        });
+        assertEquals("001e", sb.toString());
+        sb.setLength(0);
+        assertEquals("2A", HexCodec.appendUpperCase(sb, 42, 2).toString());
+    }
+}
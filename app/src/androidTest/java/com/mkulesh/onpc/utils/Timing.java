@@ -0,0 +1,58 @@
+/*
+ * Copyright (C) 2019. Mikhail Kulesh
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details. You should have received a copy of the GNU General
+ * Public License along with this program.
+ */
+
+package com.mkulesh.onpc.utils;
+
+import android.util.Log;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Measures the average time of a hot path on the device. The budgets of the timing tests are
+ * generous: they catch a path that became an order of magnitude slower, not small drifts
+ */
+public final class Timing
+{
+    private final static int WARM_UP = 2000;
+
+    public interface Operation
+    {
+        Object run() throws Exception;
+    }
+
+    // keeps the results alive, so that the measured work can not be optimized away
+    private static volatile Object sink;
+
+    public static long nanosPerOperation(final String name, final int iterations, final Operation op) throws Exception
+    {
+        for (int i = 0; i < WARM_UP; i++)
+        {
+            sink = op.run();
+        }
+        final long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++)
+        {
+            sink = op.run();
+        }
+        final long res = (System.nanoTime() - start) / iterations;
+        Log.d("onpc", name + ": " + res + " ns per operation");
+        return res;
+    }
+
+    public static void assertBudget(final String name, final long budgetNanos, final int iterations,
+                                    final Operation op) throws Exception
+    {
+        final long t = nanosPerOperation(name, iterations, op);
+        assertTrue(name + " takes " + t + " ns, budget is " + budgetNanos + " ns", t <= budgetNanos);
+    }
+}
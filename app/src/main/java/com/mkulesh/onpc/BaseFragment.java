@@ -36,9 +36,6 @@ import com.mkulesh.onpc.iscp.messages.CustomPopupMsg;
 import com.mkulesh.onpc.utils.Logging;
 import com.mkulesh.onpc.utils.Utils;
 
-import java.util.Collections;
-import java.util.HashSet;
-
 abstract public class BaseFragment extends Fragment
 {
     /**
@@ -72,18 +69,23 @@ abstract public class BaseFragment extends Fragment
         buttonMarginVertical = activity.getResources().getDimensionPixelSize(R.dimen.button_margin_vertical);
     }
 
-    public void update(final State state, @Nullable HashSet<State.ChangeType> eventChanges)
+    /**
+     * Returns the change bits of the state fields rendered by this fragment. Changes of
+     * other fields do not cause a redraw; a power change always does
+     */
+    protected int getSubscribedChanges()
     {
-        if (eventChanges == null)
-        {
-            eventChanges = new HashSet<>();
-            Collections.addAll(eventChanges, State.ChangeType.values());
-        }
+        return State.CHANGE_ALL;
+    }
+
+    public void update(final State state, int eventChanges)
+    {
+        eventChanges &= getSubscribedChanges() | State.CHANGE_POWER;
         if (state == null || !state.isOn())
         {
             updateStandbyView(state, eventChanges);
         }
-        else
+        else if (eventChanges != State.CHANGE_NONE)
         {
             updateActiveView(state, eventChanges);
         }
@@ -120,9 +122,9 @@ abstract public class BaseFragment extends Fragment
         }
     }
 
-    protected abstract void updateStandbyView(@Nullable final State state, @NonNull final HashSet<State.ChangeType> eventChanges);
+    protected abstract void updateStandbyView(@Nullable final State state, final int eventChanges);
 
-    protected abstract void updateActiveView(@NonNull final State state, @NonNull final HashSet<State.ChangeType> eventChanges);
+    protected abstract void updateActiveView(@NonNull final State state, final int eventChanges);
 
     protected AppCompatImageButton createButton(
             @DrawableRes int imageId, @StringRes int descriptionId,
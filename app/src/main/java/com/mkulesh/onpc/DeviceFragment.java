@@ -37,8 +37,6 @@ import com.mkulesh.onpc.iscp.messages.SpeakerACommandMsg;
 import com.mkulesh.onpc.iscp.messages.SpeakerBCommandMsg;
 import com.mkulesh.onpc.utils.Logging;
 
-import java.util.HashSet;
-
 public class DeviceFragment extends BaseFragment
 {
     public DeviceFragment()
@@ -60,12 +58,20 @@ public class DeviceFragment extends BaseFragment
         prepareImageButton(R.id.speaker_b_command_toggle, null);
         prepareImageButton(R.id.google_cast_analytics_toggle, null);
 
-        update(null, null);
+        update(null, State.CHANGE_ALL);
         return rootView;
     }
 
     @Override
-    protected void updateStandbyView(@Nullable final State state, @NonNull final HashSet<State.ChangeType> eventChanges)
+    protected int getSubscribedChanges()
+    {
+        return State.CHANGE_RECEIVER_INFO | State.CHANGE_FIRMWARE | State.CHANGE_DIMMER
+                | State.CHANGE_DIGITAL_FILTER | State.CHANGE_AUTO_POWER | State.CHANGE_HDMI_CEC
+                | State.CHANGE_SPEAKER_A | State.CHANGE_SPEAKER_B | State.CHANGE_GOOGLE_CAST;
+    }
+
+    @Override
+    protected void updateStandbyView(@Nullable final State state, final int eventChanges)
     {
         if (state != null)
         {
@@ -92,14 +98,10 @@ public class DeviceFragment extends BaseFragment
     }
 
     @Override
-    protected void updateActiveView(@NonNull final State state, @NonNull final HashSet<State.ChangeType> eventChanges)
+    protected void updateActiveView(@NonNull final State state, final int eventChanges)
     {
-        if (eventChanges.contains(State.ChangeType.COMMON) ||
-                eventChanges.contains(State.ChangeType.RECEIVER_INFO))
-        {
-            Logging.info(this, "Updating device properties");
-            updateDeviceProperties(state);
-        }
+        Logging.info(this, "Updating device properties");
+        updateDeviceProperties(state);
     }
 
     private void updateDeviceProperties(@NonNull final State state)
@@ -18,7 +18,6 @@ import android.content.pm.PackageInfo;
 import android.content.pm.PackageManager;
 import android.os.Bundle;
 import android.support.annotation.NonNull;
-import android.support.annotation.Nullable;
 import android.support.design.widget.TabLayout;
 import android.support.v4.view.ViewPager;
 import android.support.v4.view.ViewPager.OnPageChangeListener;
@@ -41,14 +40,13 @@ import com.mkulesh.onpc.iscp.StateHolder;
 import com.mkulesh.onpc.iscp.StateManager;
 import com.mkulesh.onpc.iscp.messages.AmpOperationCommandMsg;
 import com.mkulesh.onpc.iscp.messages.MasterVolumeMsg;
+import com.mkulesh.onpc.iscp.messages.MessageFactory;
 import com.mkulesh.onpc.iscp.messages.PowerStatusMsg;
 import com.mkulesh.onpc.iscp.messages.ReceiverInformationMsg;
 import com.mkulesh.onpc.utils.HtmlDialogBuilder;
 import com.mkulesh.onpc.utils.Logging;
 import com.mkulesh.onpc.utils.Utils;
 
-import java.util.HashSet;
-
 public class MainActivity extends AppCompatActivity implements OnPageChangeListener, StateManager.StateListener
 {
     private static final int SETTINGS_ACTIVITY_REQID = 256;
@@ -231,11 +229,13 @@ public class MainActivity extends AppCompatActivity implements OnPageChangeListe
     {
         stateHolder.release(false);
         stateHolder.waitForRelease();
-        onStateChanged(stateHolder.getState(), null);
+        onStateChanged(stateHolder.getState(), State.CHANGE_ALL);
         final int zone = configuration.getZone();
+        MessageFactory.setUnknownStatistics(configuration.isDeveloperMode());
         try
         {
-            stateHolder.setStateManager(new StateManager(connectionState, this, device, port, zone));
+            stateHolder.setStateManager(new StateManager(connectionState, this, device, port, zone,
+                    configuration.getReceiverInformation(device, port)));
             return true;
         }
         catch (Exception ex)
@@ -289,9 +289,9 @@ public class MainActivity extends AppCompatActivity implements OnPageChangeListe
     }
 
     @Override
-    public void onStateChanged(State state, @Nullable final HashSet<State.ChangeType> eventChanges)
+    public void onStateChanged(State state, final int eventChanges)
     {
-        if (state != null && eventChanges != null && eventChanges.contains(State.ChangeType.RECEIVER_INFO))
+        if (state != null && State.isChanged(eventChanges, State.CHANGE_RECEIVER_INFO))
         {
             updateConfiguration(state);
         }
@@ -300,7 +300,7 @@ public class MainActivity extends AppCompatActivity implements OnPageChangeListe
         {
             f.update(state, eventChanges);
         }
-        if (eventChanges == null || eventChanges.contains(State.ChangeType.COMMON))
+        if (State.isChanged(eventChanges, State.CHANGE_POWER))
         {
             updateToolbar(state);
         }
@@ -316,6 +316,11 @@ public class MainActivity extends AppCompatActivity implements OnPageChangeListe
         {
             configuration.setNetworkServices(state.networkServices);
         }
+        if (state.receiverInformation != null && isConnected())
+        {
+            configuration.setReceiverInformation(configuration.getDeviceName(),
+                    configuration.getDevicePort(), state.receiverInformation);
+        }
         navigationDrawer.updateNavigationContent(state);
         updateToolbar(state);
     }
@@ -332,7 +337,7 @@ public class MainActivity extends AppCompatActivity implements OnPageChangeListe
         Logging.info(this, "device disconnected");
         if (!stateHolder.isAppExit())
         {
-            onStateChanged(stateHolder.getState(), null);
+            onStateChanged(stateHolder.getState(), State.CHANGE_ALL);
         }
     }
 
@@ -392,7 +397,7 @@ public class MainActivity extends AppCompatActivity implements OnPageChangeListe
     @Override
     public void onPageSelected(int p)
     {
-        onStateChanged(stateHolder.getState(), null);
+        onStateChanged(stateHolder.getState(), State.CHANGE_ALL);
     }
 
     void selectRightTab()
@@ -25,6 +25,7 @@ import android.view.MenuInflater;
 import android.view.MenuItem;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.AbsListView;
 import android.widget.AdapterView;
 import android.widget.LinearLayout;
 import android.widget.ListView;
@@ -46,7 +47,6 @@ import com.mkulesh.onpc.utils.Logging;
 import com.mkulesh.onpc.utils.Utils;
 
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
 
 public class MediaFragment extends BaseFragment implements AdapterView.OnItemClickListener
@@ -58,6 +58,7 @@ public class MediaFragment extends BaseFragment implements AdapterView.OnItemCli
     private XmlListItemMsg selectedItem = null;
     int moveFrom = -1;
     private AppCompatImageView progressIndicator;
+    private String listKey = "";
 
     public MediaFragment()
     {
@@ -77,13 +78,30 @@ public class MediaFragment extends BaseFragment implements AdapterView.OnItemCli
         listView.setFocusableInTouchMode(true);
         listView.setChoiceMode(ListView.CHOICE_MODE_MULTIPLE);
         listView.setOnItemClickListener(this);
+        listView.setOnScrollListener(new AbsListView.OnScrollListener()
+        {
+            @Override
+            public void onScrollStateChanged(AbsListView view, int scrollState)
+            {
+                // empty
+            }
+
+            @Override
+            public void onScroll(AbsListView view, int firstVisibleItem, int visibleItemCount, int totalItemCount)
+            {
+                if (activity.isConnected() && visibleItemCount > 0)
+                {
+                    activity.getStateManager().requestXmlListItems(firstVisibleItem + visibleItemCount);
+                }
+            }
+        });
 
         registerForContextMenu(listView);
 
         progressIndicator = rootView.findViewById(R.id.progress_indicator);
         Utils.setImageViewColorAttr(activity, progressIndicator, R.attr.colorButtonDisabled);
 
-        update(null, null);
+        update(null, State.CHANGE_ALL);
         return rootView;
     }
 
@@ -167,7 +185,13 @@ public class MediaFragment extends BaseFragment implements AdapterView.OnItemCli
     }
 
     @Override
-    protected void updateStandbyView(@Nullable final State state, @NonNull final HashSet<State.ChangeType> eventChanges)
+    protected int getSubscribedChanges()
+    {
+        return State.CHANGE_RECEIVER_INFO | State.CHANGE_INPUT | State.CHANGE_MEDIA_ITEMS;
+    }
+
+    @Override
+    protected void updateStandbyView(@Nullable final State state, final int eventChanges)
     {
         moveFrom = -1;
         selectorPaletteLayout.removeAllViews();
@@ -178,9 +202,9 @@ public class MediaFragment extends BaseFragment implements AdapterView.OnItemCli
     }
 
     @Override
-    protected void updateActiveView(@NonNull final State state, @NonNull final HashSet<State.ChangeType> eventChanges)
+    protected void updateActiveView(@NonNull final State state, final int eventChanges)
     {
-        if (eventChanges.contains(State.ChangeType.MEDIA_ITEMS) || eventChanges.contains(State.ChangeType.RECEIVER_INFO))
+        if (State.isChanged(eventChanges, getSubscribedChanges()))
         {
             Logging.info(this, "Updating media fragment: " + state.mediaItems.size() + "/" + state.serviceItems.size());
             moveFrom = -1;
@@ -271,6 +295,15 @@ public class MediaFragment extends BaseFragment implements AdapterView.OnItemCli
 
     private void updateListView(@NonNull final State state)
     {
+        // when the next page of the same list arrives, the scroll position shall be kept
+        final String newListKey = state.serviceType + "/" + state.numberOfItems + "/" + state.titleBar;
+        final boolean nextPage = newListKey.equals(listKey) && listViewAdapter != null
+                && state.mediaItems.size() > listViewAdapter.getCount();
+        listKey = newListKey;
+        final int firstVisible = listView.getFirstVisiblePosition();
+        final View firstView = listView.getChildAt(0);
+        final int firstTop = firstView == null ? 0 : firstView.getTop();
+
         listView.clearChoices();
         listView.invalidate();
         final List<XmlListItemMsg> mediaItems = state.mediaItems;
@@ -319,7 +352,11 @@ public class MediaFragment extends BaseFragment implements AdapterView.OnItemCli
         }
         listViewAdapter = new MediaListAdapter(this, activity, newItems);
         listView.setAdapter(listViewAdapter);
-        if (playing >= 0)
+        if (nextPage)
+        {
+            listView.setSelectionFromTop(firstVisible, firstTop);
+        }
+        else if (playing >= 0)
         {
             setSelection(playing, listView.getHeight() / 2);
         }
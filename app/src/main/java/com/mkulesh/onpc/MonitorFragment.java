@@ -14,8 +14,10 @@
 package com.mkulesh.onpc;
 
 import android.annotation.SuppressLint;
+import android.graphics.Bitmap;
 import android.graphics.drawable.Drawable;
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.support.v7.widget.AppCompatButton;
@@ -32,6 +34,7 @@ import android.widget.TextView;
 
 import com.mkulesh.onpc.config.Configuration;
 import com.mkulesh.onpc.iscp.State;
+import com.mkulesh.onpc.iscp.StateManager;
 import com.mkulesh.onpc.iscp.messages.AmpOperationCommandMsg;
 import com.mkulesh.onpc.iscp.messages.AudioMutingMsg;
 import com.mkulesh.onpc.iscp.messages.DisplayModeMsg;
@@ -41,19 +44,18 @@ import com.mkulesh.onpc.iscp.messages.MenuStatusMsg;
 import com.mkulesh.onpc.iscp.messages.OperationCommandMsg;
 import com.mkulesh.onpc.iscp.messages.PlayStatusMsg;
 import com.mkulesh.onpc.iscp.messages.ReceiverInformationMsg;
-import com.mkulesh.onpc.iscp.messages.TimeSeekMsg;
 import com.mkulesh.onpc.iscp.messages.TrackInfoMsg;
 import com.mkulesh.onpc.utils.Logging;
 import com.mkulesh.onpc.utils.Utils;
 
 import java.text.DecimalFormat;
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
 
 public class MonitorFragment extends BaseFragment
 {
     private final static String VOLUME_LEVEL = "volume_level";
+    private final static long CLOCK_TICK = 250;
 
     private AppCompatImageButton btnRepeat;
     private AppCompatImageButton btnPrevious;
@@ -66,7 +68,23 @@ public class MonitorFragment extends BaseFragment
     private AppCompatImageButton positiveFeed, negativeFeed;
     private final List<View> deviceSoundButtons = new ArrayList<>();
     private ImageView cover;
+    private Bitmap shownCover = null;
+    private int shownCoverTicket = 0;
     private AppCompatSeekBar seekBar;
+    private boolean seekTracking = false;
+
+    // While playing, the elapsed time is shown from the playback clock of the state
+    private final Runnable clockTicker = new Runnable()
+    {
+        @Override
+        public void run()
+        {
+            if (activity.isConnected() && activity.getStateManager().getState().isOn())
+            {
+                updateProgressBar(activity.getStateManager().getState());
+            }
+        }
+    };
 
     public MonitorFragment()
     {
@@ -120,29 +138,34 @@ public class MonitorFragment extends BaseFragment
         }
 
         cover = rootView.findViewById(R.id.tv_cover);
+        // a cover shown by a previous view is never released since it may still be drawn
+        shownCover = null;
         cover.setContentDescription(activity.getResources().getString(R.string.tv_display_mode));
         prepareButtonListeners(cover, new DisplayModeMsg(DisplayModeMsg.TOGGLE));
 
         seekBar = rootView.findViewById(R.id.progress_bar);
         seekBar.setOnSeekBarChangeListener(new SeekBar.OnSeekBarChangeListener()
         {
-            int progressChanged = 0;
-
             public void onProgressChanged(SeekBar seekBar, int progress, boolean fromUser)
             {
-                progressChanged = progress;
+                if (fromUser && activity.isConnected())
+                {
+                    seekTime(progress);
+                }
             }
 
             public void onStartTrackingTouch(SeekBar seekBar)
             {
-                // empty
+                seekTracking = true;
             }
 
             public void onStopTrackingTouch(SeekBar seekBar)
             {
+                seekTracking = false;
                 if (activity.isConnected())
                 {
-                    seekTime(progressChanged);
+                    // restarts the clock that was paused while the user moved the seek bar
+                    updateProgressBar(activity.getStateManager().getState());
                 }
             }
         });
@@ -185,7 +208,7 @@ public class MonitorFragment extends BaseFragment
                     }
                 });
 
-        update(null, null);
+        update(null, State.CHANGE_ALL);
         return rootView;
     }
 
@@ -270,7 +293,7 @@ public class MonitorFragment extends BaseFragment
     }
 
     @Override
-    protected void updateStandbyView(@Nullable final State state, @NonNull final HashSet<State.ChangeType> eventChanges)
+    protected void updateStandbyView(@Nullable final State state, final int eventChanges)
     {
         ((TextView) rootView.findViewById(R.id.tv_time_start)).setText(
                 activity.getResources().getString(R.string.tv_time_default));
@@ -289,6 +312,7 @@ public class MonitorFragment extends BaseFragment
         cover.setImageResource(R.drawable.empty_cover);
         seekBar.setEnabled(false);
         seekBar.setProgress(0);
+        rootView.removeCallbacks(clockTicker);
         for (AppCompatImageButton b : amplifierButtons)
         {
             setButtonEnabled(b, state != null);
@@ -314,23 +338,50 @@ public class MonitorFragment extends BaseFragment
     }
 
     @Override
-    protected void updateActiveView(@NonNull final State state, @NonNull final HashSet<State.ChangeType> eventChanges)
+    public void onPause()
+    {
+        super.onPause();
+        rootView.removeCallbacks(clockTicker);
+    }
+
+    @Override
+    protected int getSubscribedChanges()
     {
-        // time seek only
-        if (eventChanges.size() == 1 && eventChanges.contains(State.ChangeType.TIME_SEEK))
+        return State.CHANGE_RECEIVER_INFO | State.CHANGE_MUTE | State.CHANGE_LISTENING_MODE
+                | State.CHANGE_VOLUME | State.CHANGE_COVER | State.CHANGE_ALBUM | State.CHANGE_ARTIST
+                | State.CHANGE_TITLE | State.CHANGE_FILE_FORMAT | State.CHANGE_TIME | State.CHANGE_TRACK
+                | State.CHANGE_PLAY_STATUS | State.CHANGE_REPEAT | State.CHANGE_SHUFFLE | State.CHANGE_MENU;
+    }
+
+    @Override
+    protected void updateActiveView(@NonNull final State state, final int eventChanges)
+    {
+        // Only the views of changed fields are updated; the power change updates all
+        if (State.isChanged(eventChanges, ~State.CHANGE_TIME))
         {
-            updateProgressBar(state);
-            return;
+            Logging.info(this, "Updating playback monitor");
         }
 
-        Logging.info(this, "Updating playback monitor");
         // Text
-        ((TextView) rootView.findViewById(R.id.tv_album)).setText(state.album);
-        ((TextView) rootView.findViewById(R.id.tv_artist)).setText(state.artist);
-        ((TextView) rootView.findViewById(R.id.tv_title)).setText(state.title);
-        ((TextView) rootView.findViewById(R.id.tv_file_format)).setText(state.fileFormat);
+        if (State.isChanged(eventChanges, State.CHANGE_POWER | State.CHANGE_ALBUM))
+        {
+            ((TextView) rootView.findViewById(R.id.tv_album)).setText(state.album);
+        }
+        if (State.isChanged(eventChanges, State.CHANGE_POWER | State.CHANGE_ARTIST))
+        {
+            ((TextView) rootView.findViewById(R.id.tv_artist)).setText(state.artist);
+        }
+        if (State.isChanged(eventChanges, State.CHANGE_POWER | State.CHANGE_TITLE))
+        {
+            ((TextView) rootView.findViewById(R.id.tv_title)).setText(state.title);
+        }
+        if (State.isChanged(eventChanges, State.CHANGE_POWER | State.CHANGE_FILE_FORMAT))
+        {
+            ((TextView) rootView.findViewById(R.id.tv_file_format)).setText(state.fileFormat);
+        }
 
         // service icon and track
+        if (State.isChanged(eventChanges, State.CHANGE_POWER | State.CHANGE_MENU | State.CHANGE_TRACK))
         {
             final TextView track = rootView.findViewById(R.id.tv_track);
             final Drawable bg = Utils.getDrawable(activity, state.serviceIcon.getImageId());
@@ -340,106 +391,136 @@ public class MonitorFragment extends BaseFragment
         }
 
         // cover
-        cover.setEnabled(true);
-        if (state.cover == null)
-        {
-            cover.setImageResource(R.drawable.empty_cover);
-        }
-        else
+        if (State.isChanged(eventChanges, State.CHANGE_POWER | State.CHANGE_COVER))
         {
-            cover.setImageBitmap(state.cover);
+            cover.setEnabled(true);
+            if (state.cover == null)
+            {
+                cover.setImageResource(R.drawable.empty_cover);
+            }
+            else
+            {
+                cover.setImageBitmap(state.cover);
+            }
+            if (shownCover != null && shownCover != state.cover)
+            {
+                StateManager.releaseCover(activity, shownCover, shownCoverTicket);
+            }
+            shownCover = state.cover;
+            shownCoverTicket = state.coverTicket;
         }
 
         // progress bar
-        updateProgressBar(state);
+        if (State.isChanged(eventChanges, State.CHANGE_POWER | State.CHANGE_TIME
+                | State.CHANGE_PLAY_STATUS | State.CHANGE_MENU))
+        {
+            updateProgressBar(state);
+        }
 
         // buttons
-        for (AppCompatImageButton b : amplifierButtons)
+        if (State.isChanged(eventChanges, State.CHANGE_POWER))
         {
-            setButtonEnabled(b, true);
+            for (AppCompatImageButton b : amplifierButtons)
+            {
+                setButtonEnabled(b, true);
+            }
         }
         for (View b : deviceSoundButtons)
         {
-            setButtonEnabled(b, true);
             if (b.getTag() instanceof AudioMutingMsg.Status)
             {
-                setButtonSelected(b, state.audioMuting == AudioMutingMsg.Status.ON);
-                final AudioMutingMsg.Status cmd = (AudioMutingMsg.Status) (b.getTag());
-                prepareButtonListeners(b, new AudioMutingMsg(state.getActiveZone(), cmd));
+                if (State.isChanged(eventChanges, State.CHANGE_POWER | State.CHANGE_MUTE))
+                {
+                    setButtonEnabled(b, true);
+                    setButtonSelected(b, state.audioMuting == AudioMutingMsg.Status.ON);
+                    final AudioMutingMsg.Status cmd = (AudioMutingMsg.Status) (b.getTag());
+                    prepareButtonListeners(b, new AudioMutingMsg(state.getActiveZone(), cmd));
+                }
             }
             else if (b.getTag() instanceof MasterVolumeMsg.Command)
             {
-                final MasterVolumeMsg.Command cmd = (MasterVolumeMsg.Command) (b.getTag());
-                prepareButtonListeners(b, new MasterVolumeMsg(state.getActiveZone(), cmd));
+                if (State.isChanged(eventChanges, State.CHANGE_POWER))
+                {
+                    setButtonEnabled(b, true);
+                    final MasterVolumeMsg.Command cmd = (MasterVolumeMsg.Command) (b.getTag());
+                    prepareButtonListeners(b, new MasterVolumeMsg(state.getActiveZone(), cmd));
+                }
             }
             else if (b.getTag() instanceof ListeningModeMsg.Mode)
             {
-                final ListeningModeMsg.Mode s = (ListeningModeMsg.Mode) (b.getTag());
-                if (s == state.listeningMode || activity.getConfiguration().isListeningModeVisible(s.getCode()))
-                {
-                    b.setVisibility(View.VISIBLE);
-                    setButtonSelected(b, s == state.listeningMode);
-                    if (b.isSelected())
-                    {
-                        b.getParent().requestChildFocus(b, b);
-                    }
-                }
-                else
+                if (State.isChanged(eventChanges, State.CHANGE_POWER | State.CHANGE_LISTENING_MODE))
                 {
-                    b.setVisibility(View.GONE);
+                    updateListeningMode(b, state.listeningMode);
                 }
             }
             else if (isVolumeLevel(b))
             {
-                updateVolumeLevel((AppCompatButton) b, state.volumeLevel, state.getActiveZoneInfo());
+                if (State.isChanged(eventChanges,
+                        State.CHANGE_POWER | State.CHANGE_VOLUME | State.CHANGE_RECEIVER_INFO))
+                {
+                    updateVolumeLevel((AppCompatButton) b, state.volumeLevel, state.getActiveZoneInfo());
+                }
             }
         }
-        for (AppCompatImageButton b : playbackButtons)
+        if (State.isChanged(eventChanges, State.CHANGE_POWER))
         {
-            prepareButtonListeners(b, new OperationCommandMsg(state.getActiveZone(), (String) (b.getTag())));
-            setButtonEnabled(b, true);
+            for (AppCompatImageButton b : playbackButtons)
+            {
+                prepareButtonListeners(b, new OperationCommandMsg(state.getActiveZone(), (String) (b.getTag())));
+                setButtonEnabled(b, true);
+            }
         }
 
-        if (state.repeatStatus == PlayStatusMsg.RepeatStatus.DISABLE)
+        if (State.isChanged(eventChanges, State.CHANGE_POWER | State.CHANGE_REPEAT))
         {
-            setButtonEnabled(btnRepeat, false);
-        }
-        else
-        {
-            setButtonEnabled(btnRepeat, true);
-            setButtonSelected(btnRepeat, state.repeatStatus != PlayStatusMsg.RepeatStatus.OFF);
+            if (state.repeatStatus == PlayStatusMsg.RepeatStatus.DISABLE)
+            {
+                setButtonEnabled(btnRepeat, false);
+            }
+            else
+            {
+                setButtonEnabled(btnRepeat, true);
+                setButtonSelected(btnRepeat, state.repeatStatus != PlayStatusMsg.RepeatStatus.OFF);
+            }
         }
 
-        if (state.shuffleStatus == PlayStatusMsg.ShuffleStatus.DISABLE)
+        if (State.isChanged(eventChanges, State.CHANGE_POWER | State.CHANGE_SHUFFLE))
         {
-            setButtonEnabled(btnRandom, false);
-        }
-        else
-        {
-            setButtonEnabled(btnRandom, true);
-            setButtonSelected(btnRandom, state.shuffleStatus != PlayStatusMsg.ShuffleStatus.OFF);
+            if (state.shuffleStatus == PlayStatusMsg.ShuffleStatus.DISABLE)
+            {
+                setButtonEnabled(btnRandom, false);
+            }
+            else
+            {
+                setButtonEnabled(btnRandom, true);
+                setButtonSelected(btnRandom, state.shuffleStatus != PlayStatusMsg.ShuffleStatus.OFF);
+            }
         }
 
-        setButtonEnabled(btnPrevious, state.isPlaying());
-        setButtonEnabled(btnNext, state.isPlaying());
-
-        switch (state.playStatus)
+        if (State.isChanged(eventChanges, State.CHANGE_POWER | State.CHANGE_PLAY_STATUS))
         {
-        case STOP:
-            btnPausePlay.setImageResource(R.drawable.cmd_play);
-            break;
-        case PLAY:
-            btnPausePlay.setImageResource(R.drawable.cmd_pause);
-            break;
-        case PAUSE:
-            btnPausePlay.setImageResource(R.drawable.cmd_play);
-            break;
-        default:
-            break;
+            setButtonEnabled(btnPrevious, state.isPlaying());
+            setButtonEnabled(btnNext, state.isPlaying());
+
+            switch (state.playStatus)
+            {
+            case STOP:
+                btnPausePlay.setImageResource(R.drawable.cmd_play);
+                break;
+            case PLAY:
+                btnPausePlay.setImageResource(R.drawable.cmd_pause);
+                break;
+            case PAUSE:
+                btnPausePlay.setImageResource(R.drawable.cmd_play);
+                break;
+            default:
+                break;
+            }
+            setButtonEnabled(btnPausePlay, state.isOn());
         }
-        setButtonEnabled(btnPausePlay, state.isOn());
 
         // Track menu
+        if (State.isChanged(eventChanges, State.CHANGE_POWER | State.CHANGE_MENU | State.CHANGE_PLAY_STATUS))
         {
             final boolean isTrackMenu = state.trackMenu == MenuStatusMsg.TrackMenu.ENABLE &&
                     state.playStatus != PlayStatusMsg.PlayStatus.STOP;
@@ -448,8 +529,30 @@ public class MonitorFragment extends BaseFragment
         }
 
         // Feeds
-        updateFeedButton(positiveFeed, state.positiveFeed);
-        updateFeedButton(negativeFeed, state.negativeFeed);
+        if (State.isChanged(eventChanges, State.CHANGE_POWER | State.CHANGE_MENU))
+        {
+            updateFeedButton(positiveFeed, state.positiveFeed);
+            updateFeedButton(negativeFeed, state.negativeFeed);
+        }
+    }
+
+    private void updateListeningMode(View b, final ListeningModeMsg.Mode listeningMode)
+    {
+        setButtonEnabled(b, true);
+        final ListeningModeMsg.Mode s = (ListeningModeMsg.Mode) (b.getTag());
+        if (s == listeningMode || activity.getConfiguration().isListeningModeVisible(s.getCode()))
+        {
+            b.setVisibility(View.VISIBLE);
+            setButtonSelected(b, s == listeningMode);
+            if (b.isSelected())
+            {
+                b.getParent().requestChildFocus(b, b);
+            }
+        }
+        else
+        {
+            b.setVisibility(View.GONE);
+        }
     }
 
     private boolean isVolumeLevel(View b)
@@ -487,10 +590,17 @@ public class MonitorFragment extends BaseFragment
 
     private void updateProgressBar(@NonNull final State state)
     {
-        ((TextView) rootView.findViewById(R.id.tv_time_start)).setText(state.currentTime);
-        ((TextView) rootView.findViewById(R.id.tv_time_end)).setText(state.maxTime);
-        final int currTime = Utils.timeToSeconds(state.currentTime);
-        final int maxTime = Utils.timeToSeconds(state.maxTime);
+        if (seekTracking)
+        {
+            // the seek bar and the time are moved by the user
+            return;
+        }
+        final int currTime = state.getElapsedSeconds(SystemClock.uptimeMillis());
+        final int maxTime = state.getMaxSeconds();
+        ((TextView) rootView.findViewById(R.id.tv_time_start)).setText(
+                currTime >= 0 ? Utils.secondsToTime(currTime) : state.currentTime);
+        ((TextView) rootView.findViewById(R.id.tv_time_end)).setText(
+                maxTime >= 0 ? Utils.secondsToTime(maxTime) : state.maxTime);
         if (currTime >= 0 && maxTime >= 0)
         {
             seekBar.setMax(maxTime);
@@ -502,23 +612,20 @@ public class MonitorFragment extends BaseFragment
             seekBar.setProgress(0);
         }
         seekBar.setEnabled(state.isPlaying() && state.timeSeek == MenuStatusMsg.TimeSeek.ENABLE);
+        rootView.removeCallbacks(clockTicker);
+        if (currTime >= 0 && state.playStatus == PlayStatusMsg.PlayStatus.PLAY)
+        {
+            rootView.postDelayed(clockTicker, CLOCK_TICK);
+        }
     }
 
     private void seekTime(int newSec)
     {
         final State state = activity.getStateManager().getState();
-        final int currTime = Utils.timeToSeconds(state.currentTime);
-        final int maxTime = Utils.timeToSeconds(state.maxTime);
-        if (currTime >= 0 && maxTime >= 0)
+        if (state.getElapsedSeconds(SystemClock.uptimeMillis()) >= 0 && state.getMaxSeconds() >= 0)
         {
-            final int hour = newSec / 3600;
-            final int min = (newSec - hour * 3600) / 60;
-            final int sec = newSec - hour * 3600 - min * 60;
-            activity.getStateManager().requestSkipNextTimeMsg(2);
-            final TimeSeekMsg msg = new TimeSeekMsg(hour, min, sec);
-            state.currentTime = msg.getTimeAsString();
-            ((TextView) rootView.findViewById(R.id.tv_time_start)).setText(state.currentTime);
-            activity.getStateManager().sendMessage(msg);
+            ((TextView) rootView.findViewById(R.id.tv_time_start)).setText(Utils.secondsToTime(newSec));
+            activity.getStateManager().requestSeek(newSec);
         }
     }
 }
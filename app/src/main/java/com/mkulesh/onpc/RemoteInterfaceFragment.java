@@ -28,7 +28,6 @@ import com.mkulesh.onpc.iscp.messages.AmpOperationCommandMsg;
 import com.mkulesh.onpc.iscp.messages.CdPlayerOperationCommandMsg;
 
 import java.util.ArrayList;
-import java.util.HashSet;
 
 public class RemoteInterfaceFragment extends BaseFragment
 {
@@ -63,7 +62,7 @@ public class RemoteInterfaceFragment extends BaseFragment
             prepareRiButton(b);
         }
 
-        update(null, null);
+        update(null, State.CHANGE_ALL);
         return rootView;
     }
 
@@ -116,7 +115,13 @@ public class RemoteInterfaceFragment extends BaseFragment
     }
 
     @Override
-    protected void updateStandbyView(@Nullable final State state, @NonNull final HashSet<State.ChangeType> eventChanges)
+    protected int getSubscribedChanges()
+    {
+        return State.CHANGE_POWER;
+    }
+
+    @Override
+    protected void updateStandbyView(@Nullable final State state, final int eventChanges)
     {
         for (View b : buttons)
         {
@@ -125,7 +130,7 @@ public class RemoteInterfaceFragment extends BaseFragment
     }
 
     @Override
-    protected void updateActiveView(@NonNull final State state, @NonNull final HashSet<State.ChangeType> eventChanges)
+    protected void updateActiveView(@NonNull final State state, final int eventChanges)
     {
         for (View b : buttons)
         {
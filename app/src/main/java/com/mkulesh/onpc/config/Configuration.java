@@ -26,7 +26,6 @@ import com.mkulesh.onpc.iscp.messages.ListeningModeMsg;
 import com.mkulesh.onpc.iscp.messages.ReceiverInformationMsg;
 import com.mkulesh.onpc.utils.Logging;
 
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -41,6 +40,7 @@ public class Configuration
     static final String SOUND_CONTROL = "sound_control";
 
     private static final String ACTIVE_ZONE = "active_zone";
+    private static final String RECEIVER_INFORMATION = "receiver_information";
 
     static final String DEVICE_SELECTORS = "device_selectors";
     static final String DEVICE_SELECTORS_NAME = "device_selectors_name";
@@ -161,6 +161,26 @@ public class Configuration
         prefEditor.apply();
     }
 
+    /**
+     * The last receiver information (NRI) document received from the given device. Since it contains the
+     * device id and the firmware version, a changed device or firmware never matches the cached document
+     */
+    public String getReceiverInformation(final String device, final int port)
+    {
+        return preferences.getString(RECEIVER_INFORMATION + "_" + device + ":" + port, "");
+    }
+
+    public void setReceiverInformation(final String device, final int port, final String data)
+    {
+        if (data.equals(getReceiverInformation(device, port)))
+        {
+            return;
+        }
+        SharedPreferences.Editor prefEditor = preferences.edit();
+        prefEditor.putString(RECEIVER_INFORMATION + "_" + device + ":" + port, data);
+        prefEditor.apply();
+    }
+
     public String getSoundControl()
     {
         return soundControl;
@@ -228,7 +248,7 @@ public class Configuration
         return preferences.getBoolean(FRIENDLY_SELECTOR_NAME, true);
     }
 
-    public void setNetworkServices(HashMap<String, String> networkServices)
+    public void setNetworkServices(Map<String, String> networkServices)
     {
         final StringBuilder str = new StringBuilder();
         for (Map.Entry<String, String> p : networkServices.entrySet())
@@ -35,6 +35,7 @@ import com.mkulesh.onpc.utils.Utils;
 import java.net.DatagramPacket;
 import java.net.DatagramSocket;
 import java.net.InetAddress;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
@@ -49,9 +50,12 @@ public class BroadcastSearch extends AsyncTask<Void, BroadcastResponseMsg, Void>
     private final ConnectionState.StateListener stateListener;
 
     private final static int TIMEOUT = 3000;
+    private final static int REQUEST_BUFFER = 64;
     private final Context context;
     private final List<Pair<BroadcastResponseMsg, AppCompatRadioButton>> devices = new ArrayList<>();
     private final AtomicBoolean active = new AtomicBoolean();
+    private final ByteBuffer requestBuffer = ByteBuffer.allocate(REQUEST_BUFFER);
+    private final EISCPMessage requestMsg = new EISCPMessage('x', "ECN", EISCPMessage.QUERY).preEncode();
     private final ContextThemeWrapper wrappedContext;
     private ConnectionState.FailureReason failureReason = null;
     private AlertDialog dialog = null;
@@ -193,14 +197,14 @@ public class BroadcastSearch extends AsyncTask<Void, BroadcastResponseMsg, Void>
     {
         try
         {
-            final int startIndex = EISCPMessage.getMsgStartIndex(response);
+            final int startIndex = EISCPMessage.getMsgStartIndex(response, 0, response.length);
             if (startIndex != 0)
             {
                 Logging.info(this, "  -> unexpected position of start index: " + startIndex);
                 return null;
             }
-            final int hSize = EISCPMessage.getHeaderSize(response, startIndex);
-            final int dSize = EISCPMessage.getDataSize(response, startIndex);
+            final int hSize = EISCPMessage.getHeaderSize(response, startIndex, response.length);
+            final int dSize = EISCPMessage.getDataSize(response, startIndex, response.length);
             return new EISCPMessage(0, response, startIndex, hSize, dSize);
         }
         catch (Exception e)
@@ -211,12 +215,12 @@ public class BroadcastSearch extends AsyncTask<Void, BroadcastResponseMsg, Void>
 
     private void request(DatagramSocket socket, final InetAddress target)
     {
-        final EISCPMessage m = new EISCPMessage('x', "ECN", "QSTN");
-        final byte[] bytes = m.getBytes();
+        requestBuffer.clear();
+        requestMsg.encodeTo(requestBuffer);
 
         try
         {
-            final DatagramPacket p = new DatagramPacket(bytes, bytes.length, target, ISCP_PORT);
+            final DatagramPacket p = new DatagramPacket(requestBuffer.array(), requestBuffer.position(), target, ISCP_PORT);
             socket.send(p);
             Logging.info(this, "message send to " + target + ", wait response for " + TIMEOUT + "ms");
         }
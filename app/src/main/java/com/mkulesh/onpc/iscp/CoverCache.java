@@ -0,0 +1,423 @@
+/*
+ * Copyright (C) 2019. Mikhail Kulesh
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details. You should have received a copy of the GNU General
+ * Public License along with this program.
+ */
+
+package com.mkulesh.onpc.iscp;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Build;
+import android.util.LruCache;
+
+import com.mkulesh.onpc.utils.HexCodec;
+import com.mkulesh.onpc.utils.Logging;
+import com.mkulesh.onpc.utils.Utils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * Two-tier cache of cover images. Decoded bitmaps are kept in a memory LRU keyed by the hash
+ * of the encoded image. The images downloaded from an URL are also stored in a size-capped
+ * directory of the application cache, keyed by the URL together with the validators
+ * (ETag, Last-Modified) of the response: the receiver may serve every cover from the same
+ * URL, so a stored image is only used if the server confirms it by a conditional request.
+ * The cache is shared by all connections of the application process.
+ *
+ * The memory of a decoded bitmap is reused for the next decoding once it is provably released:
+ * it is no longer in the memory LRU, and the cover view has given back the ticket of its last
+ * hand-out to the state. A cover handed out again gets a new ticket, so that an older ticket
+ * given back for the same bitmap does not release it.
+ */
+class CoverCache
+{
+    private final static String DISK_DIR = "covers";
+    private final static String VALIDATORS_SUFFIX = ".val";
+    private final static long DISK_CACHE_SIZE = 8 * 1024 * 1024;
+    private final static int MEMORY_CACHE_PART = 16; // the part of the heap used for bitmaps
+    private final static int REUSABLE_BITMAPS = 2;
+
+    private static CoverCache instance = null;
+
+    /**
+     * An image stored for an URL together with the validators of the response that delivered it
+     */
+    static class UrlEntry
+    {
+        final byte[] bytes;
+        final String eTag;
+        final String lastModified;
+
+        UrlEntry(final byte[] bytes, final String eTag, final String lastModified)
+        {
+            this.bytes = bytes;
+            this.eTag = eTag;
+            this.lastModified = lastModified;
+        }
+    }
+
+    private final LruCache<String, Bitmap> memoryCache;
+    private int lastTicket = 0;
+    // weak maps: a bitmap that is neither cached nor released is simply collected
+    private final Map<Bitmap, Integer> tickets = new WeakHashMap<>(); // the last ticket of a bitmap
+    private final Map<Bitmap, Boolean> cached = new WeakHashMap<>(); // bitmaps in the memory LRU
+    private final Map<Bitmap, Boolean> released = new WeakHashMap<>(); // bitmaps not shown anymore
+    private final List<Bitmap> reusableBitmaps = new ArrayList<>();
+    private final File diskDir;
+    private final AtomicInteger memoryHits = new AtomicInteger();
+    private final AtomicInteger memoryMisses = new AtomicInteger();
+    private final AtomicInteger diskHits = new AtomicInteger();
+    private final AtomicInteger diskMisses = new AtomicInteger();
+
+    static synchronized CoverCache getInstance(final Context context)
+    {
+        if (instance == null)
+        {
+            instance = new CoverCache(new File(context.getCacheDir(), DISK_DIR));
+        }
+        return instance;
+    }
+
+    private CoverCache(final File diskDir)
+    {
+        this.diskDir = diskDir;
+        final int memorySize = (int) Math.min(Integer.MAX_VALUE, Runtime.getRuntime().maxMemory() / MEMORY_CACHE_PART);
+        memoryCache = new LruCache<String, Bitmap>(memorySize)
+        {
+            @Override
+            protected int sizeOf(String key, Bitmap value)
+            {
+                return value.getByteCount();
+            }
+
+            @Override
+            protected void entryRemoved(boolean evicted, String key, Bitmap oldValue, Bitmap newValue)
+            {
+                // called from putBitmap, i.e. with the lock of the cache
+                if (oldValue != newValue)
+                {
+                    cached.remove(oldValue);
+                    if (released.containsKey(oldValue))
+                    {
+                        addReusableBitmap(oldValue);
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * Key of an image stored for the given URL
+     */
+    static String getKey(final URL url) throws Exception
+    {
+        final byte[] bytes = ("url:" + url.toString()).getBytes(ISCPMessage.UTF_8);
+        return getKey(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Key of an encoded image: the hash of its content
+     */
+    static String getKey(final byte[] bytes, final int offset, final int length) throws Exception
+    {
+        final MessageDigest md = MessageDigest.getInstance("SHA-1");
+        md.update(bytes, offset, length);
+        final byte[] digest = md.digest();
+        final StringBuilder key = new StringBuilder(2 * digest.length);
+        for (byte b : digest)
+        {
+            HexCodec.append(key, b, 2);
+        }
+        return key.toString();
+    }
+
+    synchronized Bitmap getBitmap(final String key)
+    {
+        final Bitmap bitmap = memoryCache.get(key);
+        if (bitmap != null)
+        {
+            memoryHits.incrementAndGet();
+        }
+        else
+        {
+            memoryMisses.incrementAndGet();
+        }
+        return bitmap;
+    }
+
+    synchronized void putBitmap(final String key, final Bitmap bitmap)
+    {
+        if (bitmap != null)
+        {
+            cached.put(bitmap, Boolean.TRUE);
+            memoryCache.put(key, bitmap);
+        }
+    }
+
+    /**
+     * Hands the bitmap out to the state and returns the ticket that the cover view gives back
+     * when it does not show the bitmap anymore
+     */
+    synchronized int handOut(final Bitmap bitmap)
+    {
+        if (bitmap == null)
+        {
+            return 0;
+        }
+        lastTicket++;
+        tickets.put(bitmap, lastTicket);
+        released.remove(bitmap);
+        reusableBitmaps.remove(bitmap);
+        return lastTicket;
+    }
+
+    /**
+     * Called by the cover view with the ticket of a bitmap that it does not show anymore
+     */
+    synchronized void release(final Bitmap bitmap, final int ticket)
+    {
+        final Integer last = tickets.get(bitmap);
+        if (last == null || last != ticket || !bitmap.isMutable())
+        {
+            return;
+        }
+        tickets.remove(bitmap);
+        if (cached.containsKey(bitmap))
+        {
+            released.put(bitmap, Boolean.TRUE);
+        }
+        else
+        {
+            addReusableBitmap(bitmap);
+        }
+    }
+
+    private void addReusableBitmap(final Bitmap bitmap)
+    {
+        released.remove(bitmap);
+        if (reusableBitmaps.size() >= REUSABLE_BITMAPS)
+        {
+            reusableBitmaps.remove(0);
+        }
+        reusableBitmaps.add(bitmap);
+    }
+
+    /**
+     * Takes a released bitmap that can hold the image described by the options (see BitmapFactory.Options.inBitmap)
+     */
+    synchronized Bitmap getReusableBitmap(final BitmapFactory.Options options)
+    {
+        final int width = (options.outWidth + options.inSampleSize - 1) / options.inSampleSize;
+        final int height = (options.outHeight + options.inSampleSize - 1) / options.inSampleSize;
+        for (int i = 0; i < reusableBitmaps.size(); i++)
+        {
+            final Bitmap b = reusableBitmaps.get(i);
+            final boolean fits;
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT)
+            {
+                fits = width * height * 4 <= b.getAllocationByteCount();
+            }
+            else
+            {
+                fits = options.inSampleSize == 1 && b.getWidth() == width && b.getHeight() == height;
+            }
+            if (fits)
+            {
+                reusableBitmaps.remove(i);
+                return b;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the image stored for the URL key, or null if there is none. The image shall only be
+     * used if a conditional request with its validators is answered by "not modified"
+     */
+    UrlEntry getUrlEntry(final String key)
+    {
+        final File file = new File(diskDir, key);
+        final File validators = new File(diskDir, key + VALIDATORS_SUFFIX);
+        if (file.isFile() && validators.isFile())
+        {
+            try
+            {
+                final String[] v = new String(Utils.streamToByteArray(new FileInputStream(validators)),
+                        ISCPMessage.UTF_8).split("\n", -1);
+                final byte[] bytes = Utils.streamToByteArray(new FileInputStream(file));
+                final long now = System.currentTimeMillis();
+                //noinspection ResultOfMethodCallIgnored
+                file.setLastModified(now);
+                //noinspection ResultOfMethodCallIgnored
+                validators.setLastModified(now);
+                return new UrlEntry(bytes, v[0].isEmpty() ? null : v[0],
+                        v.length < 2 || v[1].isEmpty() ? null : v[1]);
+            }
+            catch (IOException e)
+            {
+                Logging.info(this, "can not read cached image: " + e.getLocalizedMessage());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Counts the result of the conditional request for a stored image
+     */
+    void countUrlEntry(final boolean hit)
+    {
+        if (hit)
+        {
+            diskHits.incrementAndGet();
+        }
+        else
+        {
+            diskMisses.incrementAndGet();
+        }
+    }
+
+    /**
+     * Stores the image downloaded from the URL. An image without validators can not be confirmed
+     * later and is not stored, and a stored image for the same URL is removed
+     */
+    void putUrlEntry(final String key, final UrlEntry entry)
+    {
+        if (entry.bytes == null || (entry.eTag == null && entry.lastModified == null))
+        {
+            removeFile(new File(diskDir, key + VALIDATORS_SUFFIX));
+            removeFile(new File(diskDir, key));
+            return;
+        }
+        if (entry.bytes.length > DISK_CACHE_SIZE || !(diskDir.isDirectory() || diskDir.mkdirs()))
+        {
+            return;
+        }
+        // the validators are written last: an image without validators is never used
+        removeFile(new File(diskDir, key + VALIDATORS_SUFFIX));
+        final String validators = (entry.eTag == null ? "" : entry.eTag) + "\n"
+                + (entry.lastModified == null ? "" : entry.lastModified);
+        if (writeFile(key, entry.bytes))
+        {
+            writeFile(key + VALIDATORS_SUFFIX, validators.getBytes(ISCPMessage.UTF_8));
+        }
+        trimDisk();
+    }
+
+    private boolean writeFile(final String name, final byte[] bytes)
+    {
+        final File tmp = new File(diskDir, name + ".tmp");
+        try
+        {
+            final FileOutputStream out = new FileOutputStream(tmp);
+            try
+            {
+                out.write(bytes);
+            }
+            finally
+            {
+                out.close();
+            }
+            if (!tmp.renameTo(new File(diskDir, name)))
+            {
+                throw new IOException("can not rename " + tmp.getName());
+            }
+            return true;
+        }
+        catch (IOException e)
+        {
+            Logging.info(this, "can not write cached image: " + e.getLocalizedMessage());
+            removeFile(tmp);
+            return false;
+        }
+    }
+
+    private static void removeFile(final File file)
+    {
+        //noinspection ResultOfMethodCallIgnored
+        file.delete();
+    }
+
+    /**
+     * Removes the least recently used files until the directory fits into DISK_CACHE_SIZE
+     */
+    private void trimDisk()
+    {
+        final File[] files = diskDir.listFiles();
+        if (files == null)
+        {
+            return;
+        }
+        long size = 0;
+        for (File f : files)
+        {
+            size += f.length();
+        }
+        if (size <= DISK_CACHE_SIZE)
+        {
+            return;
+        }
+        Arrays.sort(files, new Comparator<File>()
+        {
+            @Override
+            public int compare(File lhs, File rhs)
+            {
+                return Long.valueOf(lhs.lastModified()).compareTo(rhs.lastModified());
+            }
+        });
+        for (int i = 0; i < files.length && size > DISK_CACHE_SIZE; i++)
+        {
+            final long length = files[i].length();
+            if (files[i].delete())
+            {
+                size -= length;
+            }
+        }
+    }
+
+    int getMemoryHits()
+    {
+        return memoryHits.get();
+    }
+
+    int getMemoryMisses()
+    {
+        return memoryMisses.get();
+    }
+
+    int getDiskHits()
+    {
+        return diskHits.get();
+    }
+
+    int getDiskMisses()
+    {
+        return diskMisses.get();
+    }
+
+    String getStatistics()
+    {
+        return "memory " + memoryHits.get() + " hits/" + memoryMisses.get() + " misses"
+                + ", disk " + diskHits.get() + " hits/" + diskMisses.get() + " misses";
+    }
+}
@@ -0,0 +1,375 @@
+/*
+ * Copyright (C) 2019. Mikhail Kulesh
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details. You should have received a copy of the GNU General
+ * Public License along with this program.
+ */
+
+package com.mkulesh.onpc.iscp;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.DisplayMetrics;
+
+import com.mkulesh.onpc.iscp.messages.JacketArtMsg;
+import com.mkulesh.onpc.utils.Logging;
+
+import java.net.HttpURLConnection;
+import java.net.URLConnection;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * Downloads and decodes cover images outside of the state thread. Every new cover
+ * supersedes the one still being loaded, and the decoded image is posted back into
+ * the input queue of the state manager as a CoverMsg.
+ */
+class CoverLoader
+{
+    static class CoverMsg extends ISCPMessage
+    {
+        private final Bitmap cover;
+        private final int ticket;
+
+        CoverMsg(final int requestId, final Bitmap cover, final int ticket)
+        {
+            super(requestId, "");
+            this.cover = cover;
+            this.ticket = ticket;
+        }
+
+        Bitmap getCover()
+        {
+            return cover;
+        }
+
+        int getTicket()
+        {
+            return ticket;
+        }
+
+        @Override
+        public String toString()
+        {
+            return "COVER/" + Integer.toString(messageId) + "["
+                    + (cover == null ? "null" : cover.getWidth() + "x" + cover.getHeight()) + "]";
+        }
+    }
+
+    private final BlockingQueue<ISCPMessage> resultQueue;
+    private final CoverCache cache;
+    private final int targetSize;
+
+    // a single worker with a single waiting task: older waiting tasks are stale and discarded
+    private final ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<Runnable>(1), new ThreadPoolExecutor.DiscardOldestPolicy());
+
+    private final AtomicInteger requestId = new AtomicInteger();
+    private Future<?> pendingRequest = null;
+
+    // binary covers are assembled from several packets into a single growable buffer
+    private final static int MAX_COVER_SIZE = 4 * 1024 * 1024;
+    private JacketArtMsg.ImageType packetType = null;
+    private byte[] packetBuffer = null;
+    private int packetLength = 0;
+    private int lastCoverSize = 64 * 1024;
+
+    CoverLoader(final BlockingQueue<ISCPMessage> resultQueue, final Context context)
+    {
+        this.resultQueue = resultQueue;
+        this.cache = CoverCache.getInstance(context);
+        // the cover view never exceeds the shorter side of the screen
+        final DisplayMetrics metrics = context.getResources().getDisplayMetrics();
+        this.targetSize = Math.min(metrics.widthPixels, metrics.heightPixels);
+    }
+
+    /**
+     * Collects the cover packets and starts loading as soon as the cover is complete
+     */
+    void process(final JacketArtMsg msg)
+    {
+        if (msg.getImageType() == JacketArtMsg.ImageType.URL)
+        {
+            Logging.info(msg, "<< " + msg.toString());
+            abortPackets();
+            load(msg, null, 0);
+        }
+        else if (msg.isRawData())
+        {
+            switch (msg.getPacketFlag())
+            {
+            case START:
+                Logging.info(msg, "<< " + msg.toString());
+                abortPackets();
+                packetType = msg.getImageType();
+                packetBuffer = new byte[Math.max(lastCoverSize, msg.getRawLength())];
+                break;
+            case NOT_USED:
+                Logging.info(msg, "<< " + msg.toString() + ": packet flag missing, ignored");
+                return;
+            default:
+                if (packetBuffer == null || packetType != msg.getImageType())
+                {
+                    // the start of this sequence was lost or it is interleaved with another one
+                    abortPackets();
+                    return;
+                }
+                break;
+            }
+            if (!appendPacket(msg))
+            {
+                abortPackets();
+                return;
+            }
+            if (msg.getPacketFlag() == JacketArtMsg.PacketFlag.END)
+            {
+                Logging.info(msg, "<< " + msg.toString());
+                lastCoverSize = packetLength;
+                load(msg, packetBuffer, packetLength);
+                packetBuffer = null;
+                packetLength = 0;
+            }
+        }
+        else
+        {
+            Logging.info(msg, "<< " + msg.toString());
+        }
+    }
+
+    /**
+     * Decodes the hex data of the packet into the cover buffer, which grows as needed
+     */
+    private boolean appendPacket(final JacketArtMsg msg)
+    {
+        final int length = msg.getRawLength();
+        if (packetLength + length > MAX_COVER_SIZE)
+        {
+            Logging.info(msg, "cover exceeds " + MAX_COVER_SIZE + " bytes");
+            return false;
+        }
+        if (packetLength + length > packetBuffer.length)
+        {
+            packetBuffer = Arrays.copyOf(packetBuffer,
+                    Math.min(MAX_COVER_SIZE, Math.max(2 * packetBuffer.length, packetLength + length)));
+        }
+        try
+        {
+            packetLength += msg.getRawData(packetBuffer, packetLength);
+            return true;
+        }
+        catch (NumberFormatException e)
+        {
+            Logging.info(msg, "invalid cover packet: " + e.getLocalizedMessage());
+            return false;
+        }
+    }
+
+    private void abortPackets()
+    {
+        if (packetBuffer != null)
+        {
+            Logging.info(this, "incomplete cover dropped: " + packetLength + " bytes");
+        }
+        packetBuffer = null;
+        packetLength = 0;
+    }
+
+    private void load(final JacketArtMsg msg, final byte[] buffer, final int length)
+    {
+        final int id = requestId.incrementAndGet();
+        if (pendingRequest != null)
+        {
+            pendingRequest.cancel(true);
+        }
+        pendingRequest = executor.submit(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                if (id != requestId.get())
+                {
+                    return;
+                }
+                final Bitmap cover = msg.getImageType() == JacketArtMsg.ImageType.URL ?
+                        loadFromUrl(msg) : loadFromBuffer(buffer, length);
+                if (id == requestId.get())
+                {
+                    resultQueue.offer(new CoverMsg(id, cover, cache.handOut(cover)));
+                }
+                else
+                {
+                    Logging.info(msg, "stale cover dropped: " + id);
+                }
+            }
+        });
+    }
+
+    /**
+     * Loads the cover from the URL. An image stored for the URL is revalidated by a conditional
+     * request, since the receiver may serve every cover from the same URL
+     */
+    private Bitmap loadFromUrl(final JacketArtMsg msg)
+    {
+        byte[] bytes = null;
+        HttpURLConnection http = null;
+        try
+        {
+            final String key = CoverCache.getKey(msg.getUrl());
+            final CoverCache.UrlEntry stored = cache.getUrlEntry(key);
+            final URLConnection connection = msg.getUrl().openConnection();
+            if (connection instanceof HttpURLConnection)
+            {
+                http = (HttpURLConnection) connection;
+            }
+            if (stored != null && http != null)
+            {
+                if (stored.eTag != null)
+                {
+                    http.setRequestProperty("If-None-Match", stored.eTag);
+                }
+                if (stored.lastModified != null)
+                {
+                    http.setRequestProperty("If-Modified-Since", stored.lastModified);
+                }
+                final boolean notModified = http.getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED;
+                cache.countUrlEntry(notModified);
+                if (notModified)
+                {
+                    Logging.info(msg, "cover not modified: " + msg.getUrl());
+                    return loadFromBuffer(stored.bytes, stored.bytes.length);
+                }
+            }
+            bytes = msg.readImage(connection);
+            cache.putUrlEntry(key, new CoverCache.UrlEntry(bytes,
+                    connection.getHeaderField("ETag"), connection.getHeaderField("Last-Modified")));
+        }
+        catch (Exception e)
+        {
+            Logging.info(msg, "can not open image: " + e.getLocalizedMessage());
+        }
+        finally
+        {
+            if (http != null)
+            {
+                http.disconnect();
+            }
+        }
+        return bytes == null ? null : loadFromBuffer(bytes, bytes.length);
+    }
+
+    private Bitmap loadFromBuffer(final byte[] bytes, final int length)
+    {
+        String key = null;
+        try
+        {
+            key = CoverCache.getKey(bytes, 0, length);
+            final Bitmap cached = cache.getBitmap(key);
+            if (cached != null)
+            {
+                return cached;
+            }
+        }
+        catch (Exception e)
+        {
+            Logging.info(this, "can not use cover cache: " + e.getLocalizedMessage());
+        }
+        final Bitmap cover = decode(bytes, length);
+        if (key != null)
+        {
+            cache.putBitmap(key, cover);
+        }
+        return cover;
+    }
+
+    /**
+     * Decodes the image downsampled to the target size, reusing the memory of a released cover if possible
+     */
+    private Bitmap decode(final byte[] bytes, final int length)
+    {
+        Bitmap cover = null;
+        if (bytes != null)
+        {
+            try
+            {
+                final BitmapFactory.Options options = new BitmapFactory.Options();
+                options.inJustDecodeBounds = true;
+                BitmapFactory.decodeByteArray(bytes, 0, length, options);
+                if (options.outWidth > 0 && options.outHeight > 0)
+                {
+                    options.inJustDecodeBounds = false;
+                    options.inSampleSize = getSampleSize(options.outWidth, options.outHeight, targetSize);
+                    options.inMutable = true;
+                    options.inBitmap = cache.getReusableBitmap(options);
+                    try
+                    {
+                        cover = BitmapFactory.decodeByteArray(bytes, 0, length, options);
+                    }
+                    catch (IllegalArgumentException e)
+                    {
+                        // the reusable bitmap does not fit this image
+                        options.inBitmap = null;
+                        cover = BitmapFactory.decodeByteArray(bytes, 0, length, options);
+                    }
+                    Logging.info(this, "Cover image " + options.outWidth + "x" + options.outHeight
+                            + " decoded with sample size " + options.inSampleSize);
+                }
+            }
+            catch (Exception e)
+            {
+                Logging.info(this, "can not open image: " + e.getLocalizedMessage());
+            }
+        }
+        if (cover == null)
+        {
+            Logging.info(this, "can not open image");
+        }
+        return cover;
+    }
+
+    /**
+     * The largest power of two that keeps both sides of the decoded image not smaller than the target size
+     */
+    static int getSampleSize(final int width, final int height, final int targetSize)
+    {
+        int sampleSize = 1;
+        if (targetSize > 0)
+        {
+            while (width / (2 * sampleSize) >= targetSize && height / (2 * sampleSize) >= targetSize)
+            {
+                sampleSize *= 2;
+            }
+        }
+        return sampleSize;
+    }
+
+    /**
+     * Gives back a cover that is not shown anymore, see CoverCache.release
+     */
+    static void releaseCover(final Context context, final Bitmap cover, final int ticket)
+    {
+        CoverCache.getInstance(context).release(cover, ticket);
+    }
+
+    String getCacheStatistics()
+    {
+        return cache.getStatistics();
+    }
+
+    void stop()
+    {
+        requestId.incrementAndGet();
+        executor.shutdownNow();
+    }
+}
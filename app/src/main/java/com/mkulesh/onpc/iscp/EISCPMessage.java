@@ -13,30 +13,43 @@
 
 package com.mkulesh.onpc.iscp;
 
-import com.mkulesh.onpc.utils.Utils;
-
 import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
-import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 
 public class EISCPMessage
 {
     private static final Charset UTF_8 = Charset.forName("UTF-8");
 
     private final static String MSG_START = "ISCP";
-    private final static String INVALID_MSG = "INVALID";
     private final static int CR = 0x0D;
     private final static int LF = 0x0A;
     private final static int EOF = 0x1A;
     private final static Character START_CHAR = '!';
     private final static int MIN_MSG_LENGTH = 22;
+    private final static int CODE_LENGTH = 3;
+    // "ISCP", header size and data size: the part of the header needed to know the frame size
+    final static int SIZE_FIELDS_LENGTH = 12;
     public final static String QUERY = "QSTN";
 
     private final int messageId;
     private final int headerSize, dataSize, version;
     private final Character modelCategoryId;
-    private final String code;
-    private final String parameters;
+    private final int codeId;
+    private String code;
+    private String parameters;
+
+    // Frame of a constant message that is encoded only once, see getConstant
+    private byte[] encodedFrame = null;
+
+    // Registry of constant messages: code -> parameters -> message
+    private final static Map<String, Map<String, EISCPMessage>> constants = new HashMap<>();
+
+    // View on the raw parameters within the input buffer. It is only valid while the message
+    // is decoded and released as soon as the parameter string is materialized
+    private byte[] rawBytes = null;
+    private int rawOffset = 0, rawLength = 0;
 
     public EISCPMessage(int messageId, byte[] bytes, int startIndex, int headerSize, int dataSize) throws Exception
     {
@@ -44,20 +57,25 @@ public class EISCPMessage
         this.headerSize = headerSize;
         this.dataSize = dataSize;
         version = getVersion(bytes, startIndex);
-        final String body = getRawMessage(bytes, startIndex);
+        final int bodyLength = getBodyLength(bytes, startIndex);
 
-        if (body.length() < 5)
+        if (bodyLength < 5)
         {
-            throw new Exception("Can not decode message body: length " + body.length() + " is invalid");
+            throw new Exception("Can not decode message body: length " + bodyLength + " is invalid");
         }
-        if (body.charAt(0) != START_CHAR)
+        final int bodyOffset = startIndex + headerSize;
+        if (bytes[bodyOffset] != START_CHAR)
         {
             throw new Exception("Can not find start character in the raw message");
         }
 
-        modelCategoryId = body.charAt(1);
-        code = body.substring(2, 5);
-        parameters = (body.length() > 5) ? body.substring(5) : "";
+        modelCategoryId = (char) (bytes[bodyOffset + 1] & 0xFF);
+        codeId = packCode(bytes, bodyOffset + 2);
+        code = null;
+        parameters = null;
+        rawBytes = bytes;
+        rawOffset = bodyOffset + 5;
+        rawLength = bodyLength - 5;
     }
 
     public EISCPMessage(final Character modelCategoryId, final String code, final String parameters)
@@ -67,14 +85,55 @@ public class EISCPMessage
         dataSize = 2 + code.length() + parameters.length() + 1;
         version = 1;
         this.modelCategoryId = modelCategoryId;
+        this.codeId = packCode(code);
         this.code = code;
         this.parameters = parameters;
     }
 
+    /**
+     * Returns an immutable message with the given code and parameters whose frame is
+     * encoded once and shared by all senders. Shall only be used for constant commands
+     * and queries since every message is kept in the registry.
+     */
+    public static EISCPMessage getConstant(final String code, final String parameters)
+    {
+        synchronized (constants)
+        {
+            Map<String, EISCPMessage> messages = constants.get(code);
+            if (messages == null)
+            {
+                messages = new HashMap<>();
+                constants.put(code, messages);
+            }
+            EISCPMessage m = messages.get(parameters);
+            if (m == null)
+            {
+                m = new EISCPMessage('1', code, parameters).preEncode();
+                messages.put(parameters, m);
+            }
+            return m;
+        }
+    }
+
+    public static EISCPMessage getQuery(final String code)
+    {
+        return getConstant(code, QUERY);
+    }
+
+    EISCPMessage preEncode()
+    {
+        final ByteBuffer buffer = ByteBuffer.allocate(getEncodedSize());
+        if (encodeTo(buffer))
+        {
+            encodedFrame = buffer.array();
+        }
+        return this;
+    }
+
     @Override
     public String toString()
     {
-        return MSG_START + "/v" + version + "[" + headerSize + "," + dataSize + "]: " + code + "(" + parameters + ")";
+        return MSG_START + "/v" + version + "[" + headerSize + "," + dataSize + "]: " + getCode() + "(" + getParameters() + ")";
     }
 
     int getMsgSize()
@@ -94,17 +153,81 @@ public class EISCPMessage
 
     public String getCode()
     {
+        if (code == null)
+        {
+            code = unpackCode(codeId);
+        }
         return code;
     }
 
+    /**
+     * Returns the message code packed into an integer, see packCode
+     */
+    public int getCodeId()
+    {
+        return codeId;
+    }
+
     String getParameters()
     {
+        if (parameters == null)
+        {
+            parameters = rawLength > 0 ? new String(rawBytes, rawOffset, rawLength, UTF_8) : "";
+            rawBytes = null;
+        }
         return parameters;
     }
 
-    static int getMsgStartIndex(byte[] bytes)
+    /**
+     * Packs a three-letter message code into an integer, case-insensitive
+     */
+    public static int packCode(final String code)
     {
-        for (int i = 0; i < bytes.length; i++)
+        int res = 0;
+        for (int i = 0; i < CODE_LENGTH; i++)
+        {
+            res = (res << 8) | toUpper(i < code.length() ? code.charAt(i) : 0);
+        }
+        return res;
+    }
+
+    private static int packCode(final byte[] bytes, int offset)
+    {
+        int res = 0;
+        for (int i = 0; i < CODE_LENGTH; i++)
+        {
+            res = (res << 8) | toUpper(bytes[offset + i] & 0xFF);
+        }
+        return res;
+    }
+
+    private static int toUpper(int c)
+    {
+        return (c >= 'a' && c <= 'z') ? c - 'a' + 'A' : (c & 0xFF);
+    }
+
+    /**
+     * Converts a packed code back into its three-letter form
+     */
+    public static String unpackCode(int codeId)
+    {
+        final char[] chars = new char[CODE_LENGTH];
+        for (int i = CODE_LENGTH - 1; i >= 0; i--)
+        {
+            chars[i] = (char) (codeId & 0xFF);
+            codeId >>= 8;
+        }
+        return new String(chars);
+    }
+
+    static int getMsgStartLength()
+    {
+        return MSG_START.length();
+    }
+
+    static int getMsgStartIndex(byte[] bytes, int fromIndex, int endIndex)
+    {
+        for (int i = fromIndex; i + MSG_START.length() <= endIndex; i++)
         {
             if (bytes[i] == MSG_START.charAt(0) &&
                     bytes[i + 1] == MSG_START.charAt(1) &&
@@ -117,55 +240,39 @@ public class EISCPMessage
         return -1;
     }
 
-    static int getHeaderSize(byte[] bytes, int startIndex) throws Exception
+    static int getHeaderSize(byte[] bytes, int startIndex, int endIndex)
     {
         // Header Size : 4 bytes after "ISCP"
-        if (startIndex + MSG_START.length() + 4 <= bytes.length)
+        if (startIndex + MSG_START.length() + 4 <= endIndex)
         {
-            try
-            {
-                return ByteBuffer.wrap(bytes, startIndex + MSG_START.length(), 4).getInt();
-            }
-            catch (Exception e)
-            {
-                throw new Exception("Can not decode header size: " + e.getLocalizedMessage());
-            }
+            return getInt(bytes, startIndex + MSG_START.length());
         }
         return -1;
     }
 
-    static int getDataSize(byte[] bytes, int startIndex) throws Exception
+    static int getDataSize(byte[] bytes, int startIndex, int endIndex)
     {
         // Data Size : 4 bytes after Header Size
-        if (startIndex + MSG_START.length() + 8 <= bytes.length)
+        if (startIndex + MSG_START.length() + 8 <= endIndex)
         {
-            try
-            {
-                return ByteBuffer.wrap(bytes, startIndex + MSG_START.length() + 4, 4).getInt();
-            }
-            catch (Exception e)
-            {
-                throw new Exception("Can not decode data size: " + e.getLocalizedMessage());
-            }
+            return getInt(bytes, startIndex + MSG_START.length() + 4);
         }
         return -1;
     }
 
-    private int getVersion(byte[] bytes, int startIndex) throws Exception
+    private static int getInt(byte[] bytes, int offset)
+    {
+        // Big-endian integer
+        return ((bytes[offset] & 0xFF) << 24) | ((bytes[offset + 1] & 0xFF) << 16)
+                | ((bytes[offset + 2] & 0xFF) << 8) | (bytes[offset + 3] & 0xFF);
+    }
+
+    private int getVersion(byte[] bytes, int startIndex)
     {
         // Version : 1 byte after Data Size
-        try
-        {
-            if (startIndex + MSG_START.length() + 9 <= bytes.length)
-            {
-                final byte[] intBytes = new byte[]{ 0, 0, 0, 0 };
-                intBytes[3] = bytes[startIndex + MSG_START.length() + 8];
-                return ByteBuffer.wrap(intBytes).getInt();
-            }
-        }
-        catch (Exception e)
+        if (startIndex + MSG_START.length() + 9 <= bytes.length)
         {
-            throw new Exception("Can not decode version: " + e.getLocalizedMessage());
+            return bytes[startIndex + MSG_START.length() + 8] & 0xFF;
         }
         return -1;
     }
@@ -175,75 +282,157 @@ public class EISCPMessage
         return val == EOF || val == CR || val == LF;
     }
 
-    private String getRawMessage(byte[] bytes, int startIndex) throws Exception
+    private int getBodyLength(byte[] bytes, int startIndex)
     {
-        try
+        if (headerSize > 0 && dataSize > 0 && startIndex + headerSize + dataSize <= bytes.length)
         {
-            if (headerSize > 0 && dataSize > 0 && startIndex + headerSize + dataSize <= bytes.length)
+            int actualLength = 0;
+            for (int i = 0; i < dataSize; i++)
             {
-                int actualLength = 0;
-                for (int i = 0; i < dataSize; i++)
+                byte val = bytes[startIndex + headerSize + i];
+                if (isSpecialCharacter(val))
                 {
-                    byte val = bytes[startIndex + headerSize + i];
-                    if (isSpecialCharacter(val))
-                    {
-                        break;
-                    }
-                    actualLength++;
+                    break;
                 }
-                final byte[] stringBytes = Utils.catBuffer(bytes, startIndex + headerSize, actualLength);
-                return new String(stringBytes, UTF_8);
+                actualLength++;
             }
+            return actualLength;
         }
-        catch (Exception e)
-        {
-            throw new Exception("Can not decode raw message: " + e.getLocalizedMessage());
-        }
-        return INVALID_MSG;
+        return -1;
+    }
+
+    /**
+     * Returns the size of the encoded frame in bytes
+     */
+    int getEncodedSize()
+    {
+        return encodedFrame != null ? encodedFrame.length : headerSize + getEncodedDataSize();
     }
 
-    byte[] getBytes()
+    private int getEncodedDataSize()
     {
-        byte parametersBin[] = parameters.getBytes(UTF_8);
-        int dSize = 2 + code.length() + parametersBin.length + 1;
+        return 2 + getCode().length() + getUtf8Length(getParameters()) + 1;
+    }
+
+    /**
+     * Writes the frame directly into the given buffer, that shall have at least
+     * getEncodedSize() bytes remaining. Returns false if the message is not valid
+     * and nothing was written.
+     */
+    boolean encodeTo(final ByteBuffer buffer)
+    {
+        if (encodedFrame != null)
+        {
+            buffer.put(encodedFrame);
+            return true;
+        }
+
+        final String code = getCode();
+        final String parameters = getParameters();
+        final int dSize = getEncodedDataSize();
 
         if (headerSize + dSize < MIN_MSG_LENGTH)
         {
-            return null;
+            return false;
         }
-        final byte[] bytes = new byte[headerSize + dSize];
-        Arrays.fill(bytes, (byte) 0);
 
         // Message header
         for (int i = 0; i < MSG_START.length(); i++)
         {
-            bytes[i] = (byte) MSG_START.charAt(i);
+            buffer.put((byte) MSG_START.charAt(i));
         }
 
-        // Header size
-        byte[] size = ByteBuffer.allocate(4).putInt(headerSize).array();
-        System.arraycopy(size, 0, bytes, 4, size.length);
-
-        // Data size
-        size = ByteBuffer.allocate(4).putInt(dSize).array();
-        System.arraycopy(size, 0, bytes, 8, size.length);
-
-        // Version
-        bytes[12] = (byte) version;
+        // Header size, data size, version and reserved bytes
+        buffer.putInt(headerSize);
+        buffer.putInt(dSize);
+        buffer.put((byte) version);
+        for (int i = MSG_START.length() + 9; i < headerSize; i++)
+        {
+            buffer.put((byte) 0);
+        }
 
         // CMD
-        bytes[16] = (byte) START_CHAR.charValue();
-        bytes[17] = (byte) modelCategoryId.charValue();
+        buffer.put((byte) START_CHAR.charValue());
+        buffer.put((byte) modelCategoryId.charValue());
         for (int i = 0; i < code.length(); i++)
         {
-            bytes[i + 18] = (byte) code.charAt(i);
+            buffer.put((byte) code.charAt(i));
         }
 
         // Parameters
-        System.arraycopy(parametersBin, 0, bytes, 21, parametersBin.length);
+        putUtf8(buffer, parameters);
 
         // End char
-        bytes[21 + parametersBin.length] = (byte) LF;
-        return bytes;
+        buffer.put((byte) LF);
+        return true;
+    }
+
+    private static boolean isSurrogatePair(final String s, int i)
+    {
+        return Character.isHighSurrogate(s.charAt(i)) && i + 1 < s.length()
+                && Character.isLowSurrogate(s.charAt(i + 1));
+    }
+
+    private static int getUtf8Length(final String s)
+    {
+        int length = 0;
+        for (int i = 0; i < s.length(); i++)
+        {
+            final char c = s.charAt(i);
+            if (c < 0x80 || (Character.isSurrogate(c) && !isSurrogatePair(s, i)))
+            {
+                length += 1;
+            }
+            else if (c < 0x800)
+            {
+                length += 2;
+            }
+            else if (isSurrogatePair(s, i))
+            {
+                length += 4;
+                i++;
+            }
+            else
+            {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    private static void putUtf8(final ByteBuffer buffer, final String s)
+    {
+        // Same output as String.getBytes(UTF_8) but without intermediate array
+        for (int i = 0; i < s.length(); i++)
+        {
+            final char c = s.charAt(i);
+            if (c < 0x80)
+            {
+                buffer.put((byte) c);
+            }
+            else if (c < 0x800)
+            {
+                buffer.put((byte) (0xC0 | (c >> 6)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            }
+            else if (isSurrogatePair(s, i))
+            {
+                final int cp = Character.toCodePoint(c, s.charAt(++i));
+                buffer.put((byte) (0xF0 | (cp >> 18)));
+                buffer.put((byte) (0x80 | ((cp >> 12) & 0x3F)));
+                buffer.put((byte) (0x80 | ((cp >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (cp & 0x3F)));
+            }
+            else if (Character.isSurrogate(c))
+            {
+                buffer.put((byte) '?');
+            }
+            else
+            {
+                buffer.put((byte) (0xE0 | (c >> 12)));
+                buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
     }
 }
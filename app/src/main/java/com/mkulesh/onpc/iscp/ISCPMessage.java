@@ -14,6 +14,9 @@
 package com.mkulesh.onpc.iscp;
 
 import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class ISCPMessage
 {
@@ -71,6 +74,12 @@ public class ISCPMessage
 
     protected static CharParameterIf searchParameter(Character code, CharParameterIf[] values, CharParameterIf defValue)
     {
+        final ParameterTable table = getParameterTable(values);
+        if (table != null && code != null && code < ParameterTable.CHAR_TABLE_SIZE)
+        {
+            final CharParameterIf t = table.chars[code];
+            return t != null ? t : defValue;
+        }
         for (CharParameterIf t : values)
         {
             if (t.getCode() == code)
@@ -95,9 +104,19 @@ public class ISCPMessage
         {
             return defValue;
         }
+        final ParameterTable table = getParameterTable(values);
+        if (table != null)
+        {
+            // the codes are usually received as declared: only a case mismatch needs the slow path
+            final StringParameterIf t = table.strings.get(code);
+            if (t != null)
+            {
+                return t;
+            }
+        }
         for (StringParameterIf t : values)
         {
-            if (t.getCode().toUpperCase().equals(code.toUpperCase()))
+            if (t.getCode().equalsIgnoreCase(code))
             {
                 return t;
             }
@@ -105,6 +124,69 @@ public class ISCPMessage
         return defValue;
     }
 
+    /**
+     * Lookup table of a parameter enumeration: the ASCII char codes are indexed directly,
+     * the string codes are mapped as declared. The first value wins for duplicate codes.
+     * A table is immutable after construction and can be shared between threads
+     */
+    private static class ParameterTable
+    {
+        final static int CHAR_TABLE_SIZE = 128;
+
+        final int size;
+        final CharParameterIf[] chars = new CharParameterIf[CHAR_TABLE_SIZE];
+        final Map<String, StringParameterIf> strings = new HashMap<>();
+
+        ParameterTable(final Object[] values)
+        {
+            size = values.length;
+            for (Object v : values)
+            {
+                if (v instanceof CharParameterIf)
+                {
+                    final Character c = ((CharParameterIf) v).getCode();
+                    if (c != null && c < CHAR_TABLE_SIZE && chars[c] == null)
+                    {
+                        chars[c] = (CharParameterIf) v;
+                    }
+                }
+                if (v instanceof StringParameterIf)
+                {
+                    final String c = ((StringParameterIf) v).getCode();
+                    if (!strings.containsKey(c))
+                    {
+                        strings.put(c, (StringParameterIf) v);
+                    }
+                }
+            }
+        }
+    }
+
+    // Lookup tables indexed by the enumeration class, built once on the first search
+    private final static ConcurrentHashMap<Class<?>, ParameterTable> parameterTables = new ConcurrentHashMap<>();
+
+    private static ParameterTable getParameterTable(final Object[] values)
+    {
+        if (values.length == 0)
+        {
+            return null;
+        }
+        final Class<?> type = values.getClass().getComponentType();
+        ParameterTable table = parameterTables.get(type);
+        if (table == null)
+        {
+            // a concurrent first search may build the same table twice, but only one is kept
+            final ParameterTable newTable = new ParameterTable(type.isEnum() ? type.getEnumConstants() : values);
+            table = parameterTables.putIfAbsent(type, newTable);
+            if (table == null)
+            {
+                table = newTable;
+            }
+        }
+        // a table is only valid for the complete set of enumeration values
+        return table.size == values.length ? table : null;
+    }
+
     public EISCPMessage getCmdMsg()
     {
         return null;
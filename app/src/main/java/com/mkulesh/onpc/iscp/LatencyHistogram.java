@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2019. Mikhail Kulesh
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details. You should have received a copy of the GNU General
+ * Public License along with this program.
+ */
+
+package com.mkulesh.onpc.iscp;
+
+/*
+ * Histogram of the latencies between a state change received from the device and the
+ * call of the state listener. Values are added on the UI thread and read on the state thread.
+ */
+class LatencyHistogram
+{
+    // upper bounds of the buckets in milliseconds; the last bucket collects all larger values
+    private final static long[] BOUNDS = new long[]{16, 33, 50, 100, 250, 500, 1000};
+
+    private final int[] counts = new int[BOUNDS.length + 1];
+    private int total = 0;
+    private long sum = 0;
+    private long max = 0;
+
+    synchronized void add(long millis)
+    {
+        int i = 0;
+        while (i < BOUNDS.length && millis >= BOUNDS[i])
+        {
+            i++;
+        }
+        counts[i]++;
+        total++;
+        sum += millis;
+        max = Math.max(max, millis);
+    }
+
+    synchronized String getStatistics()
+    {
+        if (total == 0)
+        {
+            return "no samples";
+        }
+        final StringBuilder sb = new StringBuilder();
+        sb.append(total).append(" samples, mean ").append(sum / total)
+                .append("ms, max ").append(max).append("ms:");
+        for (int i = 0; i < counts.length; i++)
+        {
+            sb.append(i < BOUNDS.length ? " <" + BOUNDS[i] : " >=" + BOUNDS[BOUNDS.length - 1])
+                    .append("ms=").append(counts[i]);
+        }
+        return sb.toString();
+    }
+}
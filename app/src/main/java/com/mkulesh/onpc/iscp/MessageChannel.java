@@ -20,14 +20,15 @@ import android.widget.Toast;
 import com.mkulesh.onpc.R;
 import com.mkulesh.onpc.iscp.messages.MessageFactory;
 import com.mkulesh.onpc.iscp.messages.OperationCommandMsg;
+import com.mkulesh.onpc.iscp.messages.TimeInfoMsg;
 import com.mkulesh.onpc.utils.Logging;
-import com.mkulesh.onpc.utils.Utils;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
 import java.nio.channels.SocketChannel;
-import java.util.Calendar;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -37,16 +38,39 @@ class MessageChannel extends AsyncTask<Void, Void, Void>
     private final static long CONNECTION_TIMEOUT = 5000;
     private final static int QUEUE_SIZE = 4 * 1024;
     private final static int SOCKET_BUFFER = 4 * 1024;
+    private final static long SELECTOR_TIMEOUT = 1000;
+    private final static int TIME_INFO_CODE = EISCPMessage.packCode(TimeInfoMsg.CODE);
 
     private final ConnectionState connectionState;
     private final AtomicBoolean active = new AtomicBoolean();
     private SocketChannel socket = null;
+    private Selector selector = null;
+    private SelectionKey selectionKey = null;
 
     private final BlockingQueue<EISCPMessage> outputQueue = new ArrayBlockingQueue<>(QUEUE_SIZE, true);
     private final BlockingQueue<ISCPMessage> inputQueue = new ArrayBlockingQueue<>(QUEUE_SIZE, true);
 
-    private byte[] packetJoinBuffer = null;
-    private int messageId = 0;
+    private ByteBuffer inputBuffer = ByteBuffer.allocate(SOCKET_BUFFER);
+    private ByteBuffer outputBuffer = ByteBuffer.allocate(SOCKET_BUFFER);
+    private final MessageDecoder decoder = new MessageDecoder(new MessageDecoder.Listener()
+    {
+        @Override
+        public void onMessage(EISCPMessage raw)
+        {
+            try
+            {
+                if (raw.getCodeId() != TIME_INFO_CODE)
+                {
+                    Logging.info(MessageChannel.this, "<< new message " + raw.getCode() + ", size=" + raw.getMsgSize() + "B");
+                }
+                inputQueue.add(MessageFactory.create(raw));
+            }
+            catch (Exception e)
+            {
+                Logging.info(MessageChannel.this, "<< error: ignored: " + e.getLocalizedMessage() + ": " + raw.toString());
+            }
+        }
+    });
 
     MessageChannel(final ConnectionState connectionState)
     {
@@ -61,6 +85,7 @@ class MessageChannel extends AsyncTask<Void, Void, Void>
         {
             active.set(false);
         }
+        wakeup();
     }
 
     boolean isActive()
@@ -78,7 +103,6 @@ class MessageChannel extends AsyncTask<Void, Void, Void>
     {
         Logging.info(this, "started: " + toString());
 
-        ByteBuffer buffer = ByteBuffer.allocate(SOCKET_BUFFER);
         while (true)
         {
             try
@@ -98,31 +122,31 @@ class MessageChannel extends AsyncTask<Void, Void, Void>
                     break;
                 }
 
-                // process input messages
-                buffer.clear();
-                int readedSize = socket.read(buffer);
-                if (readedSize < 0)
-                {
-                    Logging.info(this, "server disconnected");
-                    break;
-                }
-                else if (readedSize > 0)
-                {
-                    processInputData(buffer);
-                }
+                // wait until the socket is ready, an output message is queued or the timeout is expired
+                selector.select(SELECTOR_TIMEOUT);
 
-                // process output messages
-                EISCPMessage m = outputQueue.poll();
-                if (m != null)
+                // process input messages
+                if (selector.selectedKeys().remove(selectionKey) && selectionKey.isReadable())
                 {
-                    final byte[] bytes = m.getBytes();
-                    if (bytes != null)
+                    if (!inputBuffer.hasRemaining())
                     {
-                        final ByteBuffer messageBuffer = ByteBuffer.wrap(bytes);
-                        Logging.info(this, ">> sending: " + m.toString());
-                        socket.write(messageBuffer);
+                        // a message is larger than the buffer: grow it
+                        inputBuffer = growBuffer(inputBuffer, inputBuffer.capacity());
+                    }
+                    int readedSize = socket.read(inputBuffer);
+                    if (readedSize < 0)
+                    {
+                        Logging.info(this, "server disconnected");
+                        break;
+                    }
+                    else if (readedSize > 0)
+                    {
+                        processInputData();
                     }
                 }
+
+                // process output messages
+                processOutputData();
             }
             catch (Exception e)
             {
@@ -133,6 +157,7 @@ class MessageChannel extends AsyncTask<Void, Void, Void>
 
         try
         {
+            selector.close();
             socket.close();
         }
         catch (IOException e)
@@ -157,16 +182,18 @@ class MessageChannel extends AsyncTask<Void, Void, Void>
         {
             socket = SocketChannel.open();
             socket.configureBlocking(false);
-            socket.connect(new InetSocketAddress(server, port));
-            final long startTime = Calendar.getInstance().getTimeInMillis();
-            while (!socket.finishConnect())
+            selector = Selector.open();
+            selectionKey = socket.register(selector, SelectionKey.OP_CONNECT);
+            if (!socket.connect(new InetSocketAddress(server, port)))
             {
-                final long currTime = Calendar.getInstance().getTimeInMillis();
-                if (currTime > startTime + CONNECTION_TIMEOUT)
+                // wait for the connection without polling finishConnect in a loop
+                if (selector.select(CONNECTION_TIMEOUT) == 0 || !socket.finishConnect())
                 {
                     throw new Exception("connection timeout");
                 }
+                selector.selectedKeys().clear();
             }
+            selectionKey.interestOps(SelectionKey.OP_READ);
             Logging.info(this, "connected to " + addr);
             active.set(true);
         }
@@ -184,96 +211,62 @@ class MessageChannel extends AsyncTask<Void, Void, Void>
         return active.get();
     }
 
-    private void processInputData(ByteBuffer buffer)
+    private void processInputData()
     {
-        buffer.flip();
-        final int incoming = buffer.remaining();
-        byte[] bytes;
+        // only an incomplete tail is moved to the buffer start by compact() once the whole input is processed
+        inputBuffer.flip();
+        decoder.decode(inputBuffer);
+        inputBuffer.compact();
+    }
 
-        if (packetJoinBuffer == null)
+    private void processOutputData() throws IOException
+    {
+        // collect all pending messages in the output buffer
+        EISCPMessage m;
+        while ((m = outputQueue.poll()) != null)
         {
-            // A new buffer - just copy it
-            bytes = new byte[incoming];
-            buffer.get(bytes);
+            ensureOutputCapacity(m.getEncodedSize());
+            if (m.encodeTo(outputBuffer))
+            {
+                Logging.info(this, ">> sending: " + m.toString());
+            }
         }
-        else
+
+        // write as much as the socket accepts and keep the rest for the next cycle
+        if (outputBuffer.position() > 0)
         {
-            // Remaining part of existing buffer - join it
-            final int s1 = packetJoinBuffer.length;
-            bytes = new byte[s1 + incoming];
-            System.arraycopy(packetJoinBuffer, 0, bytes, 0, s1);
-            buffer.get(bytes, s1, incoming);
-            packetJoinBuffer = null;
+            outputBuffer.flip();
+            socket.write(outputBuffer);
+            outputBuffer.compact();
         }
 
-        int remaining = bytes.length;
-        while (remaining > 0)
+        // wait for the socket to become writable only if some data is still pending
+        final int ops = outputBuffer.position() > 0 ?
+                SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ;
+        if (selectionKey.interestOps() != ops)
         {
-            final int startIndex = EISCPMessage.getMsgStartIndex(bytes);
-            if (startIndex != 0)
-            {
-                Logging.info(this, "<< error: unexpected position of message start: " + startIndex + ", remaining=" + remaining + "B");
-            }
-
-            // convert header and data sizes
-            int hSize, dSize;
-            try
-            {
-                hSize = EISCPMessage.getHeaderSize(bytes, startIndex);
-                dSize = EISCPMessage.getDataSize(bytes, startIndex);
-            }
-            catch (Exception e)
-            {
-                Logging.info(this, "<< error: invalid expected size: " + e.getLocalizedMessage());
-                packetJoinBuffer = null;
-                return;
-            }
-
-            // inspect expected size
-            final int expectedSize = hSize + dSize;
-            if (hSize < 0 || dSize < 0 || expectedSize > remaining)
-            {
-                packetJoinBuffer = bytes;
-                return;
-            }
-
-            // try to convert raw message. In case of any errors, skip expectedSize
-            EISCPMessage raw = null;
-            try
-            {
-                messageId++;
-                raw = new EISCPMessage(messageId, bytes, startIndex, hSize, dSize);
-            }
-            catch (Exception e)
-            {
-                remaining = Math.max(0, bytes.length - expectedSize);
-                Logging.info(this, "<< error: invalid raw message: " + e.getLocalizedMessage() + ", remaining=" + remaining + "B");
-            }
-
-            if (raw != null)
-            {
-                remaining = Math.max(0, bytes.length - raw.getMsgSize());
-                try
-                {
-                    if (!"NTM".equals(raw.getCode()))
-                    {
-                        Logging.info(this, "<< new message " + raw.getCode() + ", size=" + raw.getMsgSize() + "B, remaining=" + remaining + "B");
-                    }
-                    inputQueue.add(MessageFactory.create(raw));
-                }
-                catch (Exception e)
-                {
-                    Logging.info(this, "<< error: ignored: " + e.getLocalizedMessage() + ": " + raw.toString());
-                }
-            }
+            selectionKey.interestOps(ops);
+        }
+    }
 
-            if (remaining > 0)
-            {
-                bytes = Utils.catBuffer(bytes, bytes.length - remaining, remaining);
-            }
+    private void ensureOutputCapacity(int length)
+    {
+        if (outputBuffer.remaining() < length)
+        {
+            outputBuffer = growBuffer(outputBuffer, length);
         }
     }
 
+    private static ByteBuffer growBuffer(final ByteBuffer buffer, int length)
+    {
+        // the given buffer is in write mode; the returned one contains the same data and is also in write mode
+        final ByteBuffer newBuffer = ByteBuffer.allocate(
+                Math.max(2 * buffer.capacity(), buffer.position() + length));
+        buffer.flip();
+        newBuffer.put(buffer);
+        return newBuffer;
+    }
+
     @Override
     protected void onProgressUpdate(Void... result)
     {
@@ -283,5 +276,14 @@ class MessageChannel extends AsyncTask<Void, Void, Void>
     void sendMessage(EISCPMessage eiscpMessage)
     {
         outputQueue.add(eiscpMessage);
+        wakeup();
+    }
+
+    private void wakeup()
+    {
+        if (selector != null)
+        {
+            selector.wakeup();
+        }
     }
 }
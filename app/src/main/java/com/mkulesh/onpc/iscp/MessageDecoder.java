@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2019. Mikhail Kulesh
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details. You should have received a copy of the GNU General
+ * Public License along with this program.
+ */
+
+package com.mkulesh.onpc.iscp;
+
+import com.mkulesh.onpc.utils.Logging;
+
+import java.nio.ByteBuffer;
+
+/*
+ * Splits the received bytes into EISCP frames. Frames are decoded in place; an incomplete
+ * frame at the end of the input stays in the buffer until the rest of it is received.
+ */
+class MessageDecoder
+{
+    // a larger frame is considered as a corrupt header
+    final static int MAX_FRAME_SIZE = 1024 * 1024;
+
+    interface Listener
+    {
+        void onMessage(EISCPMessage raw);
+    }
+
+    private final Listener listener;
+    private int messageId = 0;
+
+    MessageDecoder(final Listener listener)
+    {
+        this.listener = listener;
+    }
+
+    /**
+     * Decodes all complete frames between the position and the limit of the buffer (read mode).
+     * The position is moved behind the processed bytes; the remaining ones are the start of an
+     * incomplete frame
+     */
+    void decode(final ByteBuffer buffer)
+    {
+        final byte[] bytes = buffer.array();
+        while (buffer.hasRemaining())
+        {
+            final int startIndex = EISCPMessage.getMsgStartIndex(bytes, buffer.position(), buffer.limit());
+            if (startIndex < 0)
+            {
+                // keep the last bytes since they can contain a part of the message start
+                final int skipped = Math.max(0, buffer.remaining() - EISCPMessage.getMsgStartLength() + 1);
+                if (skipped > 0)
+                {
+                    Logging.info(this, "<< error: message start not found, skipped " + skipped + "B");
+                    buffer.position(buffer.position() + skipped);
+                }
+                break;
+            }
+            if (startIndex != buffer.position())
+            {
+                Logging.info(this, "<< error: unexpected position of message start: "
+                        + (startIndex - buffer.position()) + ", remaining=" + buffer.remaining() + "B");
+                buffer.position(startIndex);
+            }
+
+            // wait for the rest of the header if the size fields are not complete
+            if (startIndex + EISCPMessage.SIZE_FIELDS_LENGTH > buffer.limit())
+            {
+                break;
+            }
+
+            // convert header and data sizes; a corrupt header is skipped together with its message start
+            final int hSize = EISCPMessage.getHeaderSize(bytes, startIndex, buffer.limit());
+            final int dSize = EISCPMessage.getDataSize(bytes, startIndex, buffer.limit());
+            if (hSize < EISCPMessage.SIZE_FIELDS_LENGTH || dSize <= 0
+                    || hSize > MAX_FRAME_SIZE || dSize > MAX_FRAME_SIZE - hSize)
+            {
+                Logging.info(this, "<< error: invalid expected size: " + hSize + "+" + dSize);
+                buffer.position(startIndex + EISCPMessage.getMsgStartLength());
+                continue;
+            }
+
+            // wait for the rest of the message if it is not complete
+            final int expectedSize = hSize + dSize;
+            if (expectedSize > buffer.limit() - startIndex)
+            {
+                break;
+            }
+
+            // try to convert raw message. In case of any errors, skip expectedSize
+            EISCPMessage raw = null;
+            try
+            {
+                messageId++;
+                raw = new EISCPMessage(messageId, bytes, startIndex, hSize, dSize);
+            }
+            catch (Exception e)
+            {
+                Logging.info(this, "<< error: invalid raw message: " + e.getLocalizedMessage()
+                        + ", remaining=" + (buffer.limit() - startIndex - expectedSize) + "B");
+            }
+            buffer.position(startIndex + expectedSize);
+
+            if (raw != null)
+            {
+                listener.onMessage(raw);
+            }
+        }
+    }
+}
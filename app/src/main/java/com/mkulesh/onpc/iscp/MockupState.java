@@ -13,6 +13,8 @@
 
 package com.mkulesh.onpc.iscp;
 
+import android.os.SystemClock;
+
 import com.mkulesh.onpc.iscp.messages.AutoPowerMsg;
 import com.mkulesh.onpc.iscp.messages.DigitalFilterMsg;
 import com.mkulesh.onpc.iscp.messages.DimmerLevelMsg;
@@ -26,6 +28,11 @@ import com.mkulesh.onpc.iscp.messages.ReceiverInformationMsg;
 import com.mkulesh.onpc.iscp.messages.ServiceType;
 import com.mkulesh.onpc.utils.Logging;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
 class MockupState extends State
 {
     MockupState(int zone)
@@ -35,22 +42,28 @@ class MockupState extends State
 
         //Common
         powerStatus = PowerStatusMsg.PowerStatus.ON;
-        deviceProperties.put("brand", "Onkyo");
-        deviceProperties.put("model", "NS-6130");
-        deviceProperties.put("year", "2016");
-        deviceProperties.put("firmwareversion", "1234-5678-910");
-        networkServices.put("04", "Pandora");
-        networkServices.put("0A", "Spotify");
-        networkServices.put("0E", "TuneIn");
-        networkServices.put("12", "Deezer");
-        networkServices.put("18", "Airplay");
-        networkServices.put("1B", "Tidal");
-        networkServices.put("1D", "Play Queue");
-        zones.add(new ReceiverInformationMsg.Zone("0", "Main", 0));
-        zones.add(new ReceiverInformationMsg.Zone("2", "Zone2", 1));
-        deviceSelectors.add(new ReceiverInformationMsg.Selector("2B", "Network", 1, "2B", false));
-        deviceSelectors.add(new ReceiverInformationMsg.Selector("29", "Front USB", 1, "29", true));
-        deviceSelectors.add(new ReceiverInformationMsg.Selector("2A", "Rear USB", 1, "2A", true));
+        final Map<String, String> properties = new HashMap<>();
+        properties.put("brand", "Onkyo");
+        properties.put("model", "NS-6130");
+        properties.put("year", "2016");
+        properties.put("firmwareversion", "1234-5678-910");
+        deviceProperties = Collections.unmodifiableMap(properties);
+        final Map<String, String> services = new HashMap<>();
+        services.put("04", "Pandora");
+        services.put("0A", "Spotify");
+        services.put("0E", "TuneIn");
+        services.put("12", "Deezer");
+        services.put("18", "Airplay");
+        services.put("1B", "Tidal");
+        services.put("1D", "Play Queue");
+        networkServices = Collections.unmodifiableMap(services);
+        zones = Collections.unmodifiableList(Arrays.asList(
+                new ReceiverInformationMsg.Zone("0", "Main", 0),
+                new ReceiverInformationMsg.Zone("2", "Zone2", 1)));
+        deviceSelectors = Collections.unmodifiableList(Arrays.asList(
+                new ReceiverInformationMsg.Selector("2B", "Network", 1, "2B", false),
+                new ReceiverInformationMsg.Selector("29", "Front USB", 1, "29", true),
+                new ReceiverInformationMsg.Selector("2A", "Rear USB", 1, "2A", true)));
         inputType = InputSelectorMsg.InputType.NET;
         dimmerLevel = DimmerLevelMsg.Level.DIM;
         digitalFilter = DigitalFilterMsg.Filter.F01;
@@ -63,6 +76,9 @@ class MockupState extends State
         title = "Long title of song";
         currentTime = "00:00:59";
         maxTime = "00:10:15";
+        elapsedSeconds = 59;
+        maxSeconds = 615;
+        elapsedReference = SystemClock.uptimeMillis();
         currentTrack = 1;
         maxTrack = 10;
         fileFormat = "FLAC/44hHz/16b";
@@ -79,14 +95,15 @@ class MockupState extends State
         numberOfLayers = 0;
         numberOfItems = 9;
         titleBar = "Net";
-        serviceItems.add(new NetworkServiceMsg("Music Server"));
-        serviceItems.add(new NetworkServiceMsg("SPOTIFY"));
-        serviceItems.add(new NetworkServiceMsg("TuneIn"));
-        serviceItems.add(new NetworkServiceMsg("Deezer"));
-        serviceItems.add(new NetworkServiceMsg("Airplay"));
-        serviceItems.add(new NetworkServiceMsg("Tidal"));
-        serviceItems.add(new NetworkServiceMsg("Chromecast built-in"));
-        serviceItems.add(new NetworkServiceMsg("FlareConnect"));
-        serviceItems.add(new NetworkServiceMsg("Play Queue"));
+        serviceItems = Collections.unmodifiableList(Arrays.asList(
+                new NetworkServiceMsg("Music Server"),
+                new NetworkServiceMsg("SPOTIFY"),
+                new NetworkServiceMsg("TuneIn"),
+                new NetworkServiceMsg("Deezer"),
+                new NetworkServiceMsg("Airplay"),
+                new NetworkServiceMsg("Tidal"),
+                new NetworkServiceMsg("Chromecast built-in"),
+                new NetworkServiceMsg("FlareConnect"),
+                new NetworkServiceMsg("Play Queue")));
     }
 }
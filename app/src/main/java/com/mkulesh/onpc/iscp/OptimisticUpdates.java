@@ -0,0 +1,276 @@
+/*
+ * Copyright (C) 2019. Mikhail Kulesh
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details. You should have received a copy of the GNU General
+ * Public License along with this program.
+ */
+
+package com.mkulesh.onpc.iscp;
+
+import com.mkulesh.onpc.iscp.messages.AudioMutingMsg;
+import com.mkulesh.onpc.iscp.messages.InputSelectorMsg;
+import com.mkulesh.onpc.iscp.messages.ListeningModeMsg;
+import com.mkulesh.onpc.iscp.messages.MasterVolumeMsg;
+import com.mkulesh.onpc.iscp.messages.ReceiverInformationMsg;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Optimistic updates of user commands. The expected result of a command is applied to the state
+ * at once, and the changed field stays pending until the device reports the value expected from
+ * the last command sent for it. Meanwhile, the messages of the device only update the confirmed
+ * value that is restored if the expected value does not come in time. All methods shall be called
+ * from the state thread.
+ */
+class OptimisticUpdates
+{
+    private final static long CONFIRMATION_TIMEOUT = 3000;
+
+    /**
+     * A user command put into the input queue in order to be applied in the state thread
+     */
+    static class CommandMsg extends ISCPMessage
+    {
+        private final ISCPMessage command;
+
+        CommandMsg(final ISCPMessage command)
+        {
+            super(0, null);
+            this.command = command;
+        }
+
+        ISCPMessage getCommand()
+        {
+            return command;
+        }
+
+        @Override
+        public String toString()
+        {
+            return "CMD[" + command.toString() + "]";
+        }
+    }
+
+    private static class Pending
+    {
+        final List<ISCPMessage> expected = new ArrayList<>(); // the results of the commands not answered yet
+        ISCPMessage confirmed; // restores the last value confirmed by the device
+        long deadline = 0;
+    }
+
+    private final Map<Class<? extends ISCPMessage>, Pending> pending = new HashMap<>();
+
+    static boolean isSupported(final ISCPMessage cmd)
+    {
+        return cmd instanceof MasterVolumeMsg || cmd instanceof AudioMutingMsg
+                || cmd instanceof InputSelectorMsg || cmd instanceof ListeningModeMsg;
+    }
+
+    /**
+     * Returns the message that describes the expected result of the command, or null if the
+     * result is not predictable. The result is marked as pending.
+     */
+    ISCPMessage predict(final State state, final ISCPMessage cmd, long now)
+    {
+        final ISCPMessage result = getResult(state, cmd);
+        if (result == null)
+        {
+            return null;
+        }
+        Pending p = pending.get(result.getClass());
+        if (p == null)
+        {
+            p = new Pending();
+            p.confirmed = getConfirmed(state, cmd);
+            pending.put(result.getClass(), p);
+        }
+        p.expected.add(result);
+        p.deadline = now + CONFIRMATION_TIMEOUT;
+        return result;
+    }
+
+    /**
+     * Processes a message received from the device. Returns false if the field is pending and the
+     * message does not report the value expected from the last command: the optimistic value is
+     * kept in this case. Unsolicited and stale messages do not answer a command.
+     */
+    boolean confirm(final ISCPMessage msg)
+    {
+        final Pending p = pending.get(msg.getClass());
+        if (p == null)
+        {
+            return true;
+        }
+        p.confirmed = msg;
+        int answered = -1;
+        for (int i = 0; i < p.expected.size(); i++)
+        {
+            if (isSameValue(p.expected.get(i), msg))
+            {
+                answered = i;
+            }
+        }
+        if (answered < 0)
+        {
+            return false;
+        }
+        // the device may skip the answers to the earlier commands
+        p.expected.subList(0, answered + 1).clear();
+        if (!p.expected.isEmpty())
+        {
+            return false;
+        }
+        pending.remove(msg.getClass());
+        return true;
+    }
+
+    /**
+     * Returns the messages that restore the confirmed values of the expired commands
+     */
+    List<ISCPMessage> expire(long now)
+    {
+        final List<ISCPMessage> result = new ArrayList<>();
+        final Iterator<Pending> it = pending.values().iterator();
+        while (it.hasNext())
+        {
+            final Pending p = it.next();
+            if (p.deadline <= now)
+            {
+                result.add(p.confirmed);
+                it.remove();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the deadline of the next expiring command, or zero if nothing is pending
+     */
+    long getDeadline()
+    {
+        long deadline = 0;
+        for (Pending p : pending.values())
+        {
+            deadline = deadline == 0 ? p.deadline : Math.min(deadline, p.deadline);
+        }
+        return deadline;
+    }
+
+    private static ISCPMessage getResult(final State state, final ISCPMessage cmd)
+    {
+        final int zone = state.getActiveZone();
+        if (cmd instanceof MasterVolumeMsg)
+        {
+            final MasterVolumeMsg.Command c = ((MasterVolumeMsg) cmd).getCommand();
+            if (c == null || state.volumeLevel == MasterVolumeMsg.NO_LEVEL)
+            {
+                return null;
+            }
+            // UP1/DOWN1 are 1dB steps; a zone with zero volume step uses 0.5dB levels
+            final ReceiverInformationMsg.Zone z = state.getActiveZoneInfo();
+            final int dbStep = (z != null && z.getVolumeStep() == 0) ? 2 : 1;
+            final int maxLevel = dbStep * ((z != null && z.getVolMax() > 0) ? z.getVolMax() : MasterVolumeMsg.MAX_VOLUME_DB);
+            int level;
+            switch (c)
+            {
+            case UP:
+                level = state.volumeLevel + 1;
+                break;
+            case DOWN:
+                level = state.volumeLevel - 1;
+                break;
+            case UP1:
+                level = state.volumeLevel + dbStep;
+                break;
+            case DOWN1:
+                level = state.volumeLevel - dbStep;
+                break;
+            default:
+                return null;
+            }
+            level = Math.min(maxLevel, Math.max(0, level));
+            return level == state.volumeLevel ? null : new MasterVolumeMsg(zone, level);
+        }
+        if (cmd instanceof AudioMutingMsg)
+        {
+            final AudioMutingMsg.Status s = ((AudioMutingMsg) cmd).getStatus();
+            if (s == AudioMutingMsg.Status.TOGGLE)
+            {
+                if (state.audioMuting == AudioMutingMsg.Status.ON)
+                {
+                    return new AudioMutingMsg(zone, AudioMutingMsg.Status.OFF);
+                }
+                if (state.audioMuting == AudioMutingMsg.Status.OFF)
+                {
+                    return new AudioMutingMsg(zone, AudioMutingMsg.Status.ON);
+                }
+                return null;
+            }
+            return (s == AudioMutingMsg.Status.ON || s == AudioMutingMsg.Status.OFF) ? cmd : null;
+        }
+        if (cmd instanceof InputSelectorMsg)
+        {
+            final InputSelectorMsg.InputType t = ((InputSelectorMsg) cmd).getInputType();
+            return (t == InputSelectorMsg.InputType.NONE || t == InputSelectorMsg.InputType.USB_TOGGLE) ?
+                    null : cmd;
+        }
+        if (cmd instanceof ListeningModeMsg)
+        {
+            final ListeningModeMsg.Mode m = ((ListeningModeMsg) cmd).getMode();
+            return m == ListeningModeMsg.Mode.UP ? null : cmd;
+        }
+        return null;
+    }
+
+    /**
+     * Compares the values of two messages of the same class
+     */
+    private static boolean isSameValue(final ISCPMessage expected, final ISCPMessage msg)
+    {
+        if (expected instanceof MasterVolumeMsg)
+        {
+            return ((MasterVolumeMsg) expected).getVolumeLevel() == ((MasterVolumeMsg) msg).getVolumeLevel();
+        }
+        if (expected instanceof AudioMutingMsg)
+        {
+            return ((AudioMutingMsg) expected).getStatus() == ((AudioMutingMsg) msg).getStatus();
+        }
+        if (expected instanceof InputSelectorMsg)
+        {
+            return ((InputSelectorMsg) expected).getInputType() == ((InputSelectorMsg) msg).getInputType();
+        }
+        if (expected instanceof ListeningModeMsg)
+        {
+            return ((ListeningModeMsg) expected).getMode() == ((ListeningModeMsg) msg).getMode();
+        }
+        return false;
+    }
+
+    private static ISCPMessage getConfirmed(final State state, final ISCPMessage cmd)
+    {
+        final int zone = state.getActiveZone();
+        if (cmd instanceof MasterVolumeMsg)
+        {
+            return new MasterVolumeMsg(zone, state.volumeLevel);
+        }
+        if (cmd instanceof AudioMutingMsg)
+        {
+            return new AudioMutingMsg(zone, state.audioMuting);
+        }
+        if (cmd instanceof InputSelectorMsg)
+        {
+            return new InputSelectorMsg(zone, state.inputType.getCode());
+        }
+        return new ListeningModeMsg(state.listeningMode);
+    }
+}
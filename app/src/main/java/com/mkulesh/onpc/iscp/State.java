@@ -14,6 +14,8 @@
 package com.mkulesh.onpc.iscp;
 
 import android.graphics.Bitmap;
+import android.os.SystemClock;
+import android.util.LruCache;
 
 import com.mkulesh.onpc.iscp.messages.AlbumNameMsg;
 import com.mkulesh.onpc.iscp.messages.ArtistNameMsg;
@@ -28,7 +30,6 @@ import com.mkulesh.onpc.iscp.messages.GoogleCastAnalyticsMsg;
 import com.mkulesh.onpc.iscp.messages.GoogleCastVersionMsg;
 import com.mkulesh.onpc.iscp.messages.HdmiCecMsg;
 import com.mkulesh.onpc.iscp.messages.InputSelectorMsg;
-import com.mkulesh.onpc.iscp.messages.JacketArtMsg;
 import com.mkulesh.onpc.iscp.messages.ListInfoMsg;
 import com.mkulesh.onpc.iscp.messages.ListTitleInfoMsg;
 import com.mkulesh.onpc.iscp.messages.ListeningModeMsg;
@@ -49,31 +50,55 @@ import com.mkulesh.onpc.iscp.messages.XmlListInfoMsg;
 import com.mkulesh.onpc.iscp.messages.XmlListItemMsg;
 import com.mkulesh.onpc.utils.Logging;
 
-import java.io.ByteArrayOutputStream;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 public class State
 {
-    // Changes
-    public enum ChangeType
-    {
-        NONE,
-        COMMON,
-        TIME_SEEK,
-        MEDIA_ITEMS,
-        RECEIVER_INFO
-    }
+    // Changes: every tracked field has its own bit, update() returns the bits of changed fields
+    public final static int CHANGE_NONE = 0;
+    public final static int CHANGE_POWER = 1;
+    public final static int CHANGE_RECEIVER_INFO = 1 << 1;
+    public final static int CHANGE_FIRMWARE = 1 << 2;
+    public final static int CHANGE_INPUT = 1 << 3;
+    public final static int CHANGE_DIMMER = 1 << 4;
+    public final static int CHANGE_DIGITAL_FILTER = 1 << 5;
+    public final static int CHANGE_AUTO_POWER = 1 << 6;
+    public final static int CHANGE_HDMI_CEC = 1 << 7;
+    public final static int CHANGE_SPEAKER_A = 1 << 8;
+    public final static int CHANGE_SPEAKER_B = 1 << 9;
+    public final static int CHANGE_GOOGLE_CAST = 1 << 10;
+    public final static int CHANGE_PRIVACY_POLICY = 1 << 11;
+    public final static int CHANGE_MUTE = 1 << 12;
+    public final static int CHANGE_LISTENING_MODE = 1 << 13;
+    public final static int CHANGE_VOLUME = 1 << 14;
+    public final static int CHANGE_COVER = 1 << 15;
+    public final static int CHANGE_ALBUM = 1 << 16;
+    public final static int CHANGE_ARTIST = 1 << 17;
+    public final static int CHANGE_TITLE = 1 << 18;
+    public final static int CHANGE_FILE_FORMAT = 1 << 19;
+    public final static int CHANGE_TIME = 1 << 20;
+    public final static int CHANGE_TRACK = 1 << 21;
+    public final static int CHANGE_PLAY_STATUS = 1 << 22;
+    public final static int CHANGE_REPEAT = 1 << 23;
+    public final static int CHANGE_SHUFFLE = 1 << 24;
+    public final static int CHANGE_MENU = 1 << 25;
+    public final static int CHANGE_POPUP = 1 << 26;
+    public final static int CHANGE_MEDIA_ITEMS = 1 << 27;
+    public final static int CHANGE_ALL = ~CHANGE_NONE;
 
     // Receiver Information
+    // All collections of the state are unmodifiable: a changed collection is replaced by a new
+    // instance, so that a snapshot can share them with the state
     public String receiverInformation = null;
-    public Map<String, String> deviceProperties = new HashMap<>();
-    public HashMap<String, String> networkServices = new HashMap<>();
+    public Map<String, String> deviceProperties = Collections.emptyMap();
+    public Map<String, String> networkServices = Collections.emptyMap();
     private final int activeZone;
-    public List<ReceiverInformationMsg.Zone> zones = new ArrayList<>();
-    public List<ReceiverInformationMsg.Selector> deviceSelectors = new ArrayList<>();
+    public List<ReceiverInformationMsg.Zone> zones = Collections.emptyList();
+    public List<ReceiverInformationMsg.Selector> deviceSelectors = Collections.emptyList();
 
     //Common
     PowerStatusMsg.PowerStatus powerStatus = PowerStatusMsg.PowerStatus.STB;
@@ -96,11 +121,21 @@ public class State
 
     // Track info
     public Bitmap cover = null;
+    public int coverTicket = 0; // given back by the cover view, see StateManager.releaseCover
     public String album = "", artist = "", title = "";
     public String currentTime = "", maxTime = "";
+    // Playback clock: while playing, the elapsed time is interpolated from the last time info
+    // received. Further time info only corrects the clock if it differs by more than the tolerance
+    private final static int TIME_TOLERANCE = 1;
+    int elapsedSeconds = -1, maxSeconds = -1;
+    long elapsedReference = 0;
+    // After a seek, the clock starts at the seek target. Time info that differs from it
+    // predates the seek and is ignored until the seek is confirmed or times out
+    private final static int SEEK_TOLERANCE = 2;
+    private final static long SEEK_TIMEOUT = 3000;
+    private long seekDeadline = 0;
     public Integer currentTrack = null, maxTrack = null;
     public String fileFormat = "";
-    private ByteArrayOutputStream coverBuffer = null;
 
     // Playback
     public PlayStatusMsg.PlayStatus playStatus = PlayStatusMsg.PlayStatus.STOP;
@@ -119,10 +154,28 @@ public class State
     int numberOfLayers = 0;
     public int numberOfItems = 0;
     public String titleBar = "";
-    public final List<XmlListItemMsg> mediaItems = new ArrayList<>();
-    public final List<NetworkServiceMsg> serviceItems = new ArrayList<>();
+    public List<XmlListItemMsg> mediaItems = Collections.emptyList();
+    public List<NetworkServiceMsg> serviceItems = Collections.emptyList();
     private final List<String> listInfoItems = new ArrayList<>();
 
+    // Recently shown list layers, keyed by input, service and title path
+    private final static int MEDIA_LIST_CACHE_SIZE = 16;
+    private final List<String> titlePath = new ArrayList<>();
+    private String mediaListKey = "";
+    private final LruCache<String, CachedMediaList> mediaListCache = new LruCache<>(MEDIA_LIST_CACHE_SIZE);
+
+    private static class CachedMediaList
+    {
+        final int numberOfItems;
+        final List<XmlListItemMsg> items;
+
+        CachedMediaList(int numberOfItems, List<XmlListItemMsg> items)
+        {
+            this.numberOfItems = numberOfItems;
+            this.items = items;
+        }
+    }
+
     // Popup
     public CustomPopupMsg popup = null;
 
@@ -131,6 +184,90 @@ public class State
         this.activeZone = activeZone;
     }
 
+    /**
+     * Creates a snapshot of the given state. The snapshot shares the unmodifiable
+     * collections with its origin
+     */
+    private State(State other)
+    {
+        // Receiver Information
+        receiverInformation = other.receiverInformation;
+        deviceProperties = other.deviceProperties;
+        networkServices = other.networkServices;
+        activeZone = other.activeZone;
+        zones = other.zones;
+        deviceSelectors = other.deviceSelectors;
+
+        //Common
+        powerStatus = other.powerStatus;
+        firmwareStatus = other.firmwareStatus;
+        inputType = other.inputType;
+        dimmerLevel = other.dimmerLevel;
+        digitalFilter = other.digitalFilter;
+        audioMuting = other.audioMuting;
+        listeningMode = other.listeningMode;
+        volumeLevel = other.volumeLevel;
+        autoPower = other.autoPower;
+        hdmiCec = other.hdmiCec;
+        speakerA = other.speakerA;
+        speakerB = other.speakerB;
+
+        // Google cast
+        googleCastVersion = other.googleCastVersion;
+        googleCastAnalytics = other.googleCastAnalytics;
+        privacyPolicy = other.privacyPolicy;
+
+        // Track info
+        cover = other.cover;
+        coverTicket = other.coverTicket;
+        album = other.album;
+        artist = other.artist;
+        title = other.title;
+        currentTime = other.currentTime;
+        maxTime = other.maxTime;
+        elapsedSeconds = other.elapsedSeconds;
+        maxSeconds = other.maxSeconds;
+        elapsedReference = other.elapsedReference;
+        seekDeadline = other.seekDeadline;
+        currentTrack = other.currentTrack;
+        maxTrack = other.maxTrack;
+        fileFormat = other.fileFormat;
+
+        // Playback
+        playStatus = other.playStatus;
+        repeatStatus = other.repeatStatus;
+        shuffleStatus = other.shuffleStatus;
+        timeSeek = other.timeSeek;
+        trackMenu = other.trackMenu;
+        positiveFeed = other.positiveFeed;
+        negativeFeed = other.negativeFeed;
+        serviceIcon = other.serviceIcon;
+
+        // Navigation
+        serviceType = other.serviceType;
+        layerInfo = other.layerInfo;
+        uiType = other.uiType;
+        numberOfLayers = other.numberOfLayers;
+        numberOfItems = other.numberOfItems;
+        titleBar = other.titleBar;
+        mediaItems = other.mediaItems;
+        serviceItems = other.serviceItems;
+
+        // Popup
+        popup = other.popup;
+    }
+
+    /**
+     * Returns the snapshot of this state that is handed over to the UI thread. A received
+     * popup is delivered within a single snapshot only
+     */
+    State snapshot()
+    {
+        final State s = new State(this);
+        popup = null;
+        return s;
+    }
+
     @Override
     public String toString()
     {
@@ -177,147 +314,288 @@ public class State
         return uiType == ListTitleInfoMsg.UIType.MENU;
     }
 
-    public ChangeType update(ISCPMessage msg)
+    /**
+     * Applies a message of the registered class to the given state and returns the
+     * change bits of the fields that were modified
+     */
+    private interface Handler
     {
-        if (!(msg instanceof TimeInfoMsg) && !(msg instanceof JacketArtMsg))
-        {
-            Logging.info(msg, "<< " + msg.toString());
-        }
+        int update(State state, ISCPMessage msg);
+    }
 
-        //Common
-        if (msg instanceof PowerStatusMsg)
+    // Registered handlers indexed by the message class
+    private final static Map<Class<? extends ISCPMessage>, Handler> handlers = new HashMap<>();
+
+    static
+    {
+        // Common
+        register(PowerStatusMsg.class, new Handler()
         {
-            return isCommonChange(process((PowerStatusMsg) msg));
-        }
-        if (msg instanceof FirmwareUpdateMsg)
+            @Override
+            public int update(State state, ISCPMessage msg)
+            {
+                return getChanges(state.process((PowerStatusMsg) msg), CHANGE_POWER);
+            }
+        });
+        register(FirmwareUpdateMsg.class, new Handler()
         {
-            return isCommonChange(process((FirmwareUpdateMsg) msg));
-        }
-        if (msg instanceof ReceiverInformationMsg)
+            @Override
+            public int update(State state, ISCPMessage msg)
+            {
+                return getChanges(state.process((FirmwareUpdateMsg) msg), CHANGE_FIRMWARE);
+            }
+        });
+        register(ReceiverInformationMsg.class, new Handler()
         {
-            return process((ReceiverInformationMsg) msg) ? ChangeType.RECEIVER_INFO : ChangeType.NONE;
-        }
-        if (msg instanceof DimmerLevelMsg)
+            @Override
+            public int update(State state, ISCPMessage msg)
+            {
+                return getChanges(state.process((ReceiverInformationMsg) msg), CHANGE_RECEIVER_INFO);
+            }
+        });
+        register(DimmerLevelMsg.class, new Handler()
         {
-            return isCommonChange(process((DimmerLevelMsg) msg));
-        }
-        if (msg instanceof DigitalFilterMsg)
+            @Override
+            public int update(State state, ISCPMessage msg)
+            {
+                return getChanges(state.process((DimmerLevelMsg) msg), CHANGE_DIMMER);
+            }
+        });
+        register(DigitalFilterMsg.class, new Handler()
         {
-            return isCommonChange(process((DigitalFilterMsg) msg));
-        }
-        if (msg instanceof AudioMutingMsg)
+            @Override
+            public int update(State state, ISCPMessage msg)
+            {
+                return getChanges(state.process((DigitalFilterMsg) msg), CHANGE_DIGITAL_FILTER);
+            }
+        });
+        register(AudioMutingMsg.class, new Handler()
         {
-            return isCommonChange(process((AudioMutingMsg) msg));
-        }
-        if (msg instanceof ListeningModeMsg)
+            @Override
+            public int update(State state, ISCPMessage msg)
+            {
+                return getChanges(state.process((AudioMutingMsg) msg), CHANGE_MUTE);
+            }
+        });
+        register(ListeningModeMsg.class, new Handler()
         {
-            return isCommonChange(process((ListeningModeMsg) msg));
-        }
-        if (msg instanceof MasterVolumeMsg)
+            @Override
+            public int update(State state, ISCPMessage msg)
+            {
+                return getChanges(state.process((ListeningModeMsg) msg), CHANGE_LISTENING_MODE);
+            }
+        });
+        register(MasterVolumeMsg.class, new Handler()
         {
-            return isCommonChange(process((MasterVolumeMsg) msg));
-        }
-
+            @Override
+            public int update(State state, ISCPMessage msg)
+            {
+                return getChanges(state.process((MasterVolumeMsg) msg), CHANGE_VOLUME);
+            }
+        });
 
         // Common settings
-        if (msg instanceof AutoPowerMsg)
+        register(AutoPowerMsg.class, new Handler()
         {
-            return isCommonChange(process((AutoPowerMsg) msg));
-        }
-        if (msg instanceof HdmiCecMsg)
+            @Override
+            public int update(State state, ISCPMessage msg)
+            {
+                return getChanges(state.process((AutoPowerMsg) msg), CHANGE_AUTO_POWER);
+            }
+        });
+        register(HdmiCecMsg.class, new Handler()
         {
-            return isCommonChange(process((HdmiCecMsg) msg));
-        }
-        if (msg instanceof SpeakerACommandMsg)
+            @Override
+            public int update(State state, ISCPMessage msg)
+            {
+                return getChanges(state.process((HdmiCecMsg) msg), CHANGE_HDMI_CEC);
+            }
+        });
+        register(SpeakerACommandMsg.class, new Handler()
         {
-            return isCommonChange(process((SpeakerACommandMsg) msg));
-        }
-        if (msg instanceof SpeakerBCommandMsg)
+            @Override
+            public int update(State state, ISCPMessage msg)
+            {
+                return getChanges(state.process((SpeakerACommandMsg) msg), CHANGE_SPEAKER_A);
+            }
+        });
+        register(SpeakerBCommandMsg.class, new Handler()
         {
-            return isCommonChange(process((SpeakerBCommandMsg) msg));
-        }
+            @Override
+            public int update(State state, ISCPMessage msg)
+            {
+                return getChanges(state.process((SpeakerBCommandMsg) msg), CHANGE_SPEAKER_B);
+            }
+        });
 
         // Google cast
-        if (msg instanceof GoogleCastVersionMsg)
+        register(GoogleCastVersionMsg.class, new Handler()
         {
-            return isCommonChange(process((GoogleCastVersionMsg) msg));
-        }
-        if (msg instanceof GoogleCastAnalyticsMsg)
+            @Override
+            public int update(State state, ISCPMessage msg)
+            {
+                return getChanges(state.process((GoogleCastVersionMsg) msg), CHANGE_GOOGLE_CAST);
+            }
+        });
+        register(GoogleCastAnalyticsMsg.class, new Handler()
         {
-            return isCommonChange(process((GoogleCastAnalyticsMsg) msg));
-        }
-        if (msg instanceof PrivacyPolicyStatusMsg)
+            @Override
+            public int update(State state, ISCPMessage msg)
+            {
+                return getChanges(state.process((GoogleCastAnalyticsMsg) msg), CHANGE_GOOGLE_CAST);
+            }
+        });
+        register(PrivacyPolicyStatusMsg.class, new Handler()
         {
-            return isCommonChange(process((PrivacyPolicyStatusMsg) msg));
-        }
+            @Override
+            public int update(State state, ISCPMessage msg)
+            {
+                return getChanges(state.process((PrivacyPolicyStatusMsg) msg), CHANGE_PRIVACY_POLICY);
+            }
+        });
 
         // Track info
-        if (msg instanceof JacketArtMsg)
+        register(CoverLoader.CoverMsg.class, new Handler()
         {
-            return isCommonChange(process((JacketArtMsg) msg));
-        }
-        if (msg instanceof AlbumNameMsg)
+            @Override
+            public int update(State state, ISCPMessage msg)
+            {
+                return getChanges(state.process((CoverLoader.CoverMsg) msg), CHANGE_COVER);
+            }
+        });
+        register(AlbumNameMsg.class, new Handler()
         {
-            return isCommonChange(process((AlbumNameMsg) msg));
-        }
-        if (msg instanceof ArtistNameMsg)
+            @Override
+            public int update(State state, ISCPMessage msg)
+            {
+                return getChanges(state.process((AlbumNameMsg) msg), CHANGE_ALBUM);
+            }
+        });
+        register(ArtistNameMsg.class, new Handler()
         {
-            return isCommonChange(process((ArtistNameMsg) msg));
-        }
-        if (msg instanceof TitleNameMsg)
+            @Override
+            public int update(State state, ISCPMessage msg)
+            {
+                return getChanges(state.process((ArtistNameMsg) msg), CHANGE_ARTIST);
+            }
+        });
+        register(TitleNameMsg.class, new Handler()
         {
-            return isCommonChange(process((TitleNameMsg) msg));
-        }
-        if (msg instanceof FileFormatMsg)
+            @Override
+            public int update(State state, ISCPMessage msg)
+            {
+                return getChanges(state.process((TitleNameMsg) msg), CHANGE_TITLE);
+            }
+        });
+        register(FileFormatMsg.class, new Handler()
         {
-            return isCommonChange(process((FileFormatMsg) msg));
-        }
-        if (msg instanceof TimeInfoMsg)
+            @Override
+            public int update(State state, ISCPMessage msg)
+            {
+                return getChanges(state.process((FileFormatMsg) msg), CHANGE_FILE_FORMAT);
+            }
+        });
+        register(TimeInfoMsg.class, new Handler()
         {
-            return process((TimeInfoMsg) msg) ? ChangeType.TIME_SEEK : ChangeType.NONE;
-        }
-        if (msg instanceof TrackInfoMsg)
+            @Override
+            public int update(State state, ISCPMessage msg)
+            {
+                return getChanges(state.process((TimeInfoMsg) msg), CHANGE_TIME);
+            }
+        });
+        register(TrackInfoMsg.class, new Handler()
         {
-            return isCommonChange(process((TrackInfoMsg) msg));
-        }
+            @Override
+            public int update(State state, ISCPMessage msg)
+            {
+                return getChanges(state.process((TrackInfoMsg) msg), CHANGE_TRACK);
+            }
+        });
 
         // Playback
-        if (msg instanceof PlayStatusMsg)
+        register(PlayStatusMsg.class, new Handler()
         {
-            return isCommonChange(process((PlayStatusMsg) msg));
-        }
-        if (msg instanceof MenuStatusMsg)
+            @Override
+            public int update(State state, ISCPMessage msg)
+            {
+                return state.process((PlayStatusMsg) msg);
+            }
+        });
+        register(MenuStatusMsg.class, new Handler()
         {
-            return isCommonChange(process((MenuStatusMsg) msg));
-        }
+            @Override
+            public int update(State state, ISCPMessage msg)
+            {
+                return getChanges(state.process((MenuStatusMsg) msg), CHANGE_MENU);
+            }
+        });
 
         // Navigation
-        if (msg instanceof CustomPopupMsg)
+        register(CustomPopupMsg.class, new Handler()
         {
-            return isCommonChange(process((CustomPopupMsg) msg));
-        }
-        if (msg instanceof InputSelectorMsg)
+            @Override
+            public int update(State state, ISCPMessage msg)
+            {
+                return getChanges(state.process((CustomPopupMsg) msg), CHANGE_POPUP);
+            }
+        });
+        register(InputSelectorMsg.class, new Handler()
         {
-            return process((InputSelectorMsg) msg) ? ChangeType.MEDIA_ITEMS : ChangeType.NONE;
-        }
-        if (msg instanceof ListTitleInfoMsg)
+            @Override
+            public int update(State state, ISCPMessage msg)
+            {
+                return getChanges(state.process((InputSelectorMsg) msg), CHANGE_INPUT | CHANGE_MEDIA_ITEMS);
+            }
+        });
+        register(ListTitleInfoMsg.class, new Handler()
         {
-            return process((ListTitleInfoMsg) msg) ? ChangeType.MEDIA_ITEMS : ChangeType.NONE;
-        }
-        if (msg instanceof XmlListInfoMsg)
+            @Override
+            public int update(State state, ISCPMessage msg)
+            {
+                return getChanges(state.process((ListTitleInfoMsg) msg), CHANGE_MEDIA_ITEMS);
+            }
+        });
+        register(XmlListInfoMsg.class, new Handler()
         {
-            return process((XmlListInfoMsg) msg) ? ChangeType.MEDIA_ITEMS : ChangeType.NONE;
-        }
-        if (msg instanceof ListInfoMsg)
+            @Override
+            public int update(State state, ISCPMessage msg)
+            {
+                return state.process((XmlListInfoMsg) msg);
+            }
+        });
+        register(ListInfoMsg.class, new Handler()
+        {
+            @Override
+            public int update(State state, ISCPMessage msg)
+            {
+                return getChanges(state.process((ListInfoMsg) msg), CHANGE_MEDIA_ITEMS);
+            }
+        });
+    }
+
+    private static void register(final Class<? extends ISCPMessage> c, final Handler handler)
+    {
+        handlers.put(c, handler);
+    }
+
+    public int update(ISCPMessage msg)
+    {
+        if (Logging.ENABLED && !(msg instanceof TimeInfoMsg))
         {
-            return process((ListInfoMsg) msg) ? ChangeType.MEDIA_ITEMS : ChangeType.NONE;
+            Logging.info(msg, "<< " + msg.toString());
         }
-        return ChangeType.NONE;
+        final Handler handler = handlers.get(msg.getClass());
+        return handler == null ? CHANGE_NONE : handler.update(this, msg);
     }
 
-    private ChangeType isCommonChange(boolean change)
+    public static boolean isChanged(final int changes, final int bits)
     {
-        return change ? ChangeType.COMMON : ChangeType.NONE;
+        return (changes & bits) != 0;
+    }
+
+    private static int getChanges(boolean changed, int bits)
+    {
+        return changed ? bits : CHANGE_NONE;
     }
 
     private boolean process(PowerStatusMsg msg)
@@ -337,6 +615,11 @@ public class State
     private boolean process(ReceiverInformationMsg msg)
     {
         final String data = msg.getData();
+        if (data.equals(receiverInformation))
+        {
+            Logging.info(msg, "receiver information not changed");
+            return false;
+        }
         final int debugLength = 512;
         for (int i = 0; i < data.length(); i += debugLength)
         {
@@ -344,19 +627,23 @@ public class State
         }
         try
         {
-            msg.parseXml();
+            if (!msg.isParsed())
+            {
+                msg.parseXml();
+            }
             receiverInformation = msg.getData();
-            deviceProperties = msg.getDeviceProperties();
-            networkServices = msg.getNetworkServices();
-            zones = msg.getZones();
-            deviceSelectors.clear();
+            deviceProperties = Collections.unmodifiableMap(new HashMap<>(msg.getDeviceProperties()));
+            networkServices = Collections.unmodifiableMap(new HashMap<>(msg.getNetworkServices()));
+            zones = Collections.unmodifiableList(new ArrayList<>(msg.getZones()));
+            final List<ReceiverInformationMsg.Selector> selectors = new ArrayList<>();
             for (ReceiverInformationMsg.Selector s : msg.getDeviceSelectors())
             {
                 if (s.isActiveForZone(activeZone))
                 {
-                    deviceSelectors.add(s);
+                    selectors.add(s);
                 }
             }
+            deviceSelectors = Collections.unmodifiableList(selectors);
             return true;
         }
         catch (Exception e)
@@ -366,6 +653,19 @@ public class State
         return false;
     }
 
+    /**
+     * Forgets the receiver information that belongs to another device. The empty document
+     * replaces the stored one even if the answer of the connected device can not be parsed
+     */
+    void resetReceiverInformation()
+    {
+        receiverInformation = "";
+        deviceProperties = Collections.emptyMap();
+        networkServices = Collections.emptyMap();
+        zones = Collections.emptyList();
+        deviceSelectors = Collections.emptyList();
+    }
+
     private boolean process(InputSelectorMsg msg)
     {
         final boolean changed = inputType != msg.getInputType();
@@ -461,39 +761,11 @@ public class State
         return changed;
     }
 
-    private boolean process(JacketArtMsg msg)
+    private boolean process(CoverLoader.CoverMsg msg)
     {
-        if (msg.getImageType() == JacketArtMsg.ImageType.URL)
-        {
-            Logging.info(msg, "<< " + msg.toString());
-            cover = msg.loadFromUrl();
-            return true;
-        }
-        else if (msg.getRawData() != null)
-        {
-            final byte in[] = msg.getRawData();
-            if (msg.getPacketFlag() == JacketArtMsg.PacketFlag.START)
-            {
-                Logging.info(msg, "<< " + msg.toString());
-                coverBuffer = new ByteArrayOutputStream();
-            }
-            if (coverBuffer != null)
-            {
-                coverBuffer.write(in, 0, in.length);
-            }
-            if (msg.getPacketFlag() == JacketArtMsg.PacketFlag.END)
-            {
-                Logging.info(msg, "<< " + msg.toString());
-                cover = msg.loadFromBuffer(coverBuffer);
-                coverBuffer = null;
-                return true;
-            }
-        }
-        else
-        {
-            Logging.info(msg, "<< " + msg.toString());
-        }
-        return false;
+        cover = msg.getCover();
+        coverTicket = msg.getTicket();
+        return true;
     }
 
     private boolean process(AlbumNameMsg msg)
@@ -519,11 +791,72 @@ public class State
 
     private boolean process(TimeInfoMsg msg)
     {
-        final boolean changed = !msg.getCurrentTime().equals(currentTime)
-                || !msg.getMaxTime().equals(maxTime);
+        final long now = SystemClock.uptimeMillis();
+        final int seconds = msg.getCurrentSeconds();
+        if (seekDeadline > 0)
+        {
+            if (now < seekDeadline && (seconds < 0 || Math.abs(seconds - getElapsedSeconds(now)) > SEEK_TOLERANCE))
+            {
+                Logging.info(msg, "skipped: time info predates the seek");
+                return false;
+            }
+            seekDeadline = 0;
+        }
+        if (seconds >= 0 && msg.getMaxSeconds() == maxSeconds
+                && Math.abs(seconds - getElapsedSeconds(now)) <= TIME_TOLERANCE)
+        {
+            // the clock is in time
+            return false;
+        }
+        if (seconds < 0 && msg.getCurrentTime().equals(currentTime) && msg.getMaxTime().equals(maxTime))
+        {
+            return false;
+        }
         currentTime = msg.getCurrentTime();
         maxTime = msg.getMaxTime();
-        return changed;
+        elapsedSeconds = seconds;
+        maxSeconds = msg.getMaxSeconds();
+        elapsedReference = now;
+        return true;
+    }
+
+    /**
+     * Returns the elapsed time of the current track at the given uptime, or -1 if it is unknown
+     */
+    public int getElapsedSeconds(long uptime)
+    {
+        if (elapsedSeconds < 0 || playStatus != PlayStatusMsg.PlayStatus.PLAY)
+        {
+            return elapsedSeconds;
+        }
+        final int seconds = elapsedSeconds + (int) ((uptime - elapsedReference) / 1000);
+        return maxSeconds > 0 ? Math.min(seconds, maxSeconds) : seconds;
+    }
+
+    public int getMaxSeconds()
+    {
+        return maxSeconds;
+    }
+
+    int startSeek(int seconds, long now)
+    {
+        elapsedSeconds = seconds;
+        elapsedReference = now;
+        seekDeadline = now + SEEK_TIMEOUT;
+        return CHANGE_TIME;
+    }
+
+    boolean isSeeking(long now)
+    {
+        return seekDeadline > 0 && now < seekDeadline;
+    }
+
+    /**
+     * Returns the time when the current seek times out, or zero if no seek is running
+     */
+    long getSeekDeadline()
+    {
+        return seekDeadline;
     }
 
     private boolean process(TrackInfoMsg msg)
@@ -555,15 +888,22 @@ public class State
         return changed;
     }
 
-    private boolean process(PlayStatusMsg msg)
+    private int process(PlayStatusMsg msg)
     {
-        final boolean changed = msg.getPlayStatus() != playStatus
-                || msg.getRepeatStatus() != repeatStatus
-                || msg.getShuffleStatus() != shuffleStatus;
+        if (msg.getPlayStatus() != playStatus)
+        {
+            // the clock stops or continues at the interpolated time
+            final long now = SystemClock.uptimeMillis();
+            elapsedSeconds = getElapsedSeconds(now);
+            elapsedReference = now;
+        }
+        final int changes = getChanges(msg.getPlayStatus() != playStatus, CHANGE_PLAY_STATUS)
+                | getChanges(msg.getRepeatStatus() != repeatStatus, CHANGE_REPEAT)
+                | getChanges(msg.getShuffleStatus() != shuffleStatus, CHANGE_SHUFFLE);
         playStatus = msg.getPlayStatus();
         repeatStatus = msg.getRepeatStatus();
         shuffleStatus = msg.getShuffleStatus();
-        return changed;
+        return changes;
     }
 
     private boolean process(MenuStatusMsg msg)
@@ -611,45 +951,146 @@ public class State
             numberOfLayers = msg.getNumberOfLayers();
             changed = true;
         }
+        boolean itemsChanged = false;
         if (numberOfItems != msg.getNumberOfItems())
         {
             numberOfItems = msg.getNumberOfItems();
+            itemsChanged = true;
             changed = true;
         }
-        return changed;
+        return restoreMediaItems(itemsChanged) || changed;
+    }
+
+    /**
+     * Shows the cached items of a recently visited layer at once; the list request that
+     * follows the ListTitleInfoMsg refreshes them in the background
+     */
+    private boolean restoreMediaItems(boolean itemsChanged)
+    {
+        while (titlePath.size() > numberOfLayers)
+        {
+            titlePath.remove(titlePath.size() - 1);
+        }
+        while (titlePath.size() < numberOfLayers)
+        {
+            titlePath.add("");
+        }
+        if (numberOfLayers > 0)
+        {
+            titlePath.set(numberOfLayers - 1, titleBar);
+        }
+        final String key = inputType.getCode() + "/" + serviceType + "/" + titlePath.toString();
+        if (key.equals(mediaListKey))
+        {
+            if (itemsChanged)
+            {
+                mediaListCache.remove(key);
+            }
+            return false;
+        }
+        mediaListKey = key;
+        final CachedMediaList cached = mediaListCache.get(key);
+        if (cached == null || cached.numberOfItems != numberOfItems)
+        {
+            // pages of a new list are merged into the shown items: the old list must not leak into it
+            mediaListCache.remove(key);
+            final boolean changed = !mediaItems.isEmpty();
+            mediaItems = Collections.emptyList();
+            return changed;
+        }
+        Logging.info(this, "restoring " + cached.items.size() + " cached items for " + key);
+        mediaItems = cached.items;
+        return true;
+    }
+
+    public void clearMediaListCache()
+    {
+        mediaListCache.evictAll();
     }
 
     private void clearItems()
     {
-        mediaItems.clear();
-        serviceItems.clear();
+        mediaItems = Collections.emptyList();
+        serviceItems = Collections.emptyList();
     }
 
-    private boolean process(XmlListInfoMsg msg)
+    private int process(XmlListInfoMsg msg)
     {
         if (!inputType.isMediaList())
         {
-            mediaItems.clear();
+            mediaItems = Collections.emptyList();
             Logging.info(msg, "skipped: input channel " + inputType.toString() + " is not a media list");
-            return true;
+            return CHANGE_MEDIA_ITEMS;
         }
         try
         {
             Logging.info(msg, "processing XmlListInfoMsg");
-            msg.parseXml(mediaItems, numberOfLayers);
+            final List<XmlListItemMsg> page = msg.parseXml(new ArrayList<XmlListItemMsg>(), numberOfLayers);
+            final int offset = msg.getItemsOffset();
+            if (offset > mediaItems.size())
+            {
+                Logging.info(msg, "skipped: items page " + offset + " does not continue the list of "
+                        + mediaItems.size() + " items");
+                return CHANGE_NONE;
+            }
+            final boolean shorter = msg.getTotalItems() >= 0
+                    && Math.max(msg.getTotalItems(), offset + page.size()) < mediaItems.size();
+            if (!shorter && isSamePage(page, offset))
+            {
+                Logging.info(msg, "items page " + offset + " confirms the shown items");
+                return CHANGE_NONE;
+            }
+            // A page replaces the items in its range; the loaded tail is kept unless the list became shorter
+            final List<XmlListItemMsg> items = new ArrayList<>(Math.max(mediaItems.size(), offset + page.size()));
+            items.addAll(mediaItems);
+            for (int i = 0; i < page.size(); i++)
+            {
+                if (offset + i < items.size())
+                {
+                    items.set(offset + i, page.get(i));
+                }
+                else
+                {
+                    items.add(page.get(i));
+                }
+            }
+            if (shorter)
+            {
+                items.subList(Math.max(msg.getTotalItems(), offset + page.size()), items.size()).clear();
+            }
+            mediaItems = Collections.unmodifiableList(items);
+            // the unmodifiable list is cached by reference: no page copies the whole list again
+            mediaListCache.put(mediaListKey, new CachedMediaList(numberOfItems, mediaItems));
             if (serviceType == ServiceType.PLAYQUEUE &&
                     (currentTrack == null || maxTrack == null))
             {
                 trackInfoFromList(mediaItems);
+                return CHANGE_MEDIA_ITEMS | CHANGE_TRACK;
             }
-            return true;
+            return CHANGE_MEDIA_ITEMS;
         }
         catch (Exception e)
         {
-            mediaItems.clear();
+            mediaItems = Collections.emptyList();
             Logging.info(msg, "Can not parse XML: " + e.getLocalizedMessage());
         }
-        return false;
+        return CHANGE_NONE;
+    }
+
+    private boolean isSamePage(final List<XmlListItemMsg> page, final int offset)
+    {
+        if (page.isEmpty() || offset + page.size() > mediaItems.size())
+        {
+            return false;
+        }
+        for (int i = 0; i < page.size(); i++)
+        {
+            if (!page.get(i).isSameItem(mediaItems.get(offset + i)))
+            {
+                return false;
+            }
+        }
+        return true;
     }
 
     private void trackInfoFromList(final List<XmlListItemMsg> list)
@@ -660,7 +1101,7 @@ public class State
             if (m.getIcon() == XmlListItemMsg.Icon.PLAY)
             {
                 currentTrack = i + 1;
-                maxTrack = list.size();
+                maxTrack = Math.max(numberOfItems, list.size());
                 return;
             }
         }
@@ -685,7 +1126,7 @@ public class State
             final NetworkServiceMsg nsMsg = new NetworkServiceMsg(msg.getListedData());
             if (nsMsg.getService() != ServiceType.UNKNOWN)
             {
-                serviceItems.add(nsMsg);
+                serviceItems = appendItem(serviceItems, nsMsg);
             }
             return true;
         }
@@ -709,12 +1150,20 @@ public class State
             }
             final XmlListItemMsg nsMsg = new XmlListItemMsg(
                     msg.getLineInfo(), 0, msg.getListedData(), XmlListItemMsg.Icon.UNKNOWN, true);
-            mediaItems.add(nsMsg);
+            mediaItems = appendItem(mediaItems, nsMsg);
             return true;
         }
         return false;
     }
 
+    private static <T> List<T> appendItem(final List<T> list, final T item)
+    {
+        final List<T> result = new ArrayList<>(list.size() + 1);
+        result.addAll(list);
+        result.add(item);
+        return Collections.unmodifiableList(result);
+    }
+
     private boolean process(CustomPopupMsg msg)
     {
         popup = msg;
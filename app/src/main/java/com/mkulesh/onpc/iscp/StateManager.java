@@ -13,10 +13,12 @@
 
 package com.mkulesh.onpc.iscp;
 
+import android.content.Context;
+import android.graphics.Bitmap;
 import android.os.AsyncTask;
 import android.os.StrictMode;
+import android.os.SystemClock;
 import android.support.annotation.NonNull;
-import android.support.annotation.Nullable;
 
 import com.mkulesh.onpc.iscp.messages.AlbumNameMsg;
 import com.mkulesh.onpc.iscp.messages.ArtistNameMsg;
@@ -37,6 +39,7 @@ import com.mkulesh.onpc.iscp.messages.ListTitleInfoMsg;
 import com.mkulesh.onpc.iscp.messages.ListeningModeMsg;
 import com.mkulesh.onpc.iscp.messages.MasterVolumeMsg;
 import com.mkulesh.onpc.iscp.messages.MenuStatusMsg;
+import com.mkulesh.onpc.iscp.messages.MessageFactory;
 import com.mkulesh.onpc.iscp.messages.OperationCommandMsg;
 import com.mkulesh.onpc.iscp.messages.PlayStatusMsg;
 import com.mkulesh.onpc.iscp.messages.PowerStatusMsg;
@@ -46,42 +49,101 @@ import com.mkulesh.onpc.iscp.messages.ServiceType;
 import com.mkulesh.onpc.iscp.messages.SpeakerACommandMsg;
 import com.mkulesh.onpc.iscp.messages.SpeakerBCommandMsg;
 import com.mkulesh.onpc.iscp.messages.TimeInfoMsg;
+import com.mkulesh.onpc.iscp.messages.TimeSeekMsg;
 import com.mkulesh.onpc.iscp.messages.TitleNameMsg;
 import com.mkulesh.onpc.iscp.messages.TrackInfoMsg;
 import com.mkulesh.onpc.iscp.messages.XmlListInfoMsg;
 import com.mkulesh.onpc.utils.Logging;
 
-import java.util.HashSet;
-import java.util.Timer;
-import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
-public class StateManager extends AsyncTask<Void, Void, Void>
+public class StateManager extends AsyncTask<Void, StateManager.Publication, Void>
 {
-    private static final long GUI_UPDATE_DELAY = 500;
+    // The first change after an idle period is published at once, later changes are coalesced
+    // into frames. The frame interval adapts to the time the listener needs to render a frame
+    private static final long MIN_FRAME_INTERVAL = 40;
+    private static final long MAX_FRAME_INTERVAL = 250;
+
+    // NLA media lists are requested page by page: a page covers the visible window plus
+    // the prefetch margin, and the next page is requested when the list is scrolled near its end
+    private static final int XML_LIST_PAGE_SIZE = 50;
+    private static final int XML_LIST_PREFETCH = 20;
+    private static final int XML_SEQ_MASK = 0xFFFF;
 
     public interface StateListener
     {
-        void onStateChanged(State state, @Nullable final HashSet<State.ChangeType> eventChanges);
+        void onStateChanged(State state, final int eventChanges);
 
         void onManagerStopped();
 
         void onDeviceDisconnected();
     }
 
+    /**
+     * A state snapshot together with the changes since the previous snapshot
+     */
+    static class Publication
+    {
+        final State state;
+        final int changes;
+        final long arrivalTime; // when the first message of these changes was received
+
+        Publication(final State state, final int changes, final long arrivalTime)
+        {
+            this.state = state;
+            this.changes = changes;
+            this.arrivalTime = arrivalTime;
+        }
+    }
+
     private final StateListener stateListener;
     private final MessageChannel messageChannel;
     private final State state;
+    private volatile State snapshot;
+    private final CoverLoader coverLoader;
+    private final String cachedReceiverInformation;
+    private ReceiverInformationMsg cachedReceiverInformationMsg = null;
+    // The device id of the cached receiver information if it is used by the state
+    private String cachedDeviceId = null;
 
     private final AtomicBoolean requestXmlList = new AtomicBoolean();
-    private final AtomicInteger skipNextTimeMsg = new AtomicInteger();
-    private final HashSet<State.ChangeType> eventChanges = new HashSet<>();
+    // Put into the input queue when the UI requests a seek; only the latest seek target is sent
+    private final static ISCPMessage seekRequest = new ISCPMessage(-1, "SEEK");
+
+    // Put into the input queue when the UI sends a play queue command: the media list cache
+    // belongs to the state thread
+    private static class PlayQueueRequest extends ISCPMessage
+    {
+        final ISCPMessage msg;
+        final boolean repeat;
+
+        PlayQueueRequest(final ISCPMessage msg, final boolean repeat)
+        {
+            super(-1, "PLAY_QUEUE");
+            this.msg = msg;
+            this.repeat = repeat;
+        }
+    }
+    private final AtomicInteger seekTarget = new AtomicInteger(-1);
+    private int pendingSeek = -1;
+    private int eventChanges = State.CHANGE_NONE;
+    private long changesArrivalTime = 0;
+    private long publishTime = 0; // zero if there are no changes to be published
+    private long lastPublishTime = 0;
+    private volatile long renderTime = 0;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final OptimisticUpdates optimisticUpdates = new OptimisticUpdates();
     private int xmlReqId = 0;
-    private ISCPMessage circlePlayQueueMsg = null;
-    private final EISCPMessage commandListMsg = new EISCPMessage('1',
-            OperationCommandMsg.CODE, OperationCommandMsg.Command.LIST.toString());
+    private int xmlListFirstReqId = 0;
+    private int xmlListLayers = 0;
+    private int xmlListItems = 0;
+    private int xmlListRequested = 0;
+    private volatile ISCPMessage circlePlayQueueMsg = null;
+    private final EISCPMessage commandListMsg = EISCPMessage.getConstant(
+            OperationCommandMsg.CODE, OperationCommandMsg.Command.LIST.getCode());
 
     private final static String trackStateQueries[] = new String[]{
             ArtistNameMsg.CODE, AlbumNameMsg.CODE, TitleNameMsg.CODE,
@@ -89,12 +151,16 @@ public class StateManager extends AsyncTask<Void, Void, Void>
             MenuStatusMsg.CODE
     };
 
-    public StateManager(final ConnectionState connectionState, final StateListener stateListener, final String device, final int port, final int zone) throws Exception
+    public StateManager(final ConnectionState connectionState, final StateListener stateListener, final String device, final int port, final int zone,
+                        final String cachedReceiverInformation) throws Exception
     {
         this.stateListener = stateListener;
+        this.cachedReceiverInformation = cachedReceiverInformation;
 
         messageChannel = new MessageChannel(connectionState);
         state = new State(zone);
+        coverLoader = new CoverLoader(messageChannel.getInputQueue(), connectionState.getContext());
+        snapshot = state.snapshot();
 
         if (!messageChannel.connectToServer(device, port))
         {
@@ -113,6 +179,9 @@ public class StateManager extends AsyncTask<Void, Void, Void>
 
         messageChannel = new MessageChannel(connectionState);
         state = new MockupState(zone);
+        coverLoader = new CoverLoader(messageChannel.getInputQueue(), connectionState.getContext());
+        snapshot = state.snapshot();
+        cachedReceiverInformation = null;
 
         StrictMode.ThreadPolicy policy = new StrictMode.ThreadPolicy.Builder().permitAll().build();
         StrictMode.setThreadPolicy(policy);
@@ -127,7 +196,7 @@ public class StateManager extends AsyncTask<Void, Void, Void>
     @NonNull
     public final State getState()
     {
-        return state;
+        return snapshot;
     }
 
     @Override
@@ -135,8 +204,15 @@ public class StateManager extends AsyncTask<Void, Void, Void>
     {
         Logging.info(this, "started: " + toString());
 
+        // Show the receiver information known from the last connection as soon as it is parsed;
+        // the NRI response below only causes an update if the document has changed
+        if (cachedReceiverInformation != null && !cachedReceiverInformation.isEmpty())
+        {
+            parseCachedReceiverInformation();
+        }
+
         messageChannel.sendMessage(
-                new EISCPMessage('1', JacketArtMsg.CODE, JacketArtMsg.TYPE_LINK));
+                EISCPMessage.getConstant(JacketArtMsg.CODE, JacketArtMsg.TYPE_LINK));
 
         final String powerStateQueries[] = new String[]{
                 ReceiverInformationMsg.CODE,
@@ -149,8 +225,6 @@ public class StateManager extends AsyncTask<Void, Void, Void>
 
         sendQueries(powerStateQueries, "requesting power state...");
 
-        final BlockingQueue<Timer> timerQueue = new ArrayBlockingQueue<>(1, true);
-        skipNextTimeMsg.set(0);
         requestXmlList.set(false);
         while (true)
         {
@@ -162,9 +236,20 @@ public class StateManager extends AsyncTask<Void, Void, Void>
                     break;
                 }
 
-                final ISCPMessage msg = messageChannel.getInputQueue().take();
+                final ISCPMessage msg = takeMessage();
+                final long arrivalTime = SystemClock.uptimeMillis();
+                rollbackCommands(arrivalTime);
                 if (msg == null)
                 {
+                    // the frame is over, a command or a seek has expired, and no further message arrived
+                    if (sendPendingSeek())
+                    {
+                        schedulePublication(arrivalTime);
+                    }
+                    if (publishTime > 0 && arrivalTime >= publishTime)
+                    {
+                        publishState();
+                    }
                     continue;
                 }
 
@@ -189,19 +274,13 @@ public class StateManager extends AsyncTask<Void, Void, Void>
                     Logging.info(this, "cannot process message: " + e.getLocalizedMessage());
                 }
 
-                if (changed && timerQueue.isEmpty())
+                if (changed)
                 {
-                    final Timer t = new Timer();
-                    timerQueue.add(t);
-                    t.schedule(new java.util.TimerTask()
-                    {
-                        @Override
-                        public void run()
-                        {
-                            timerQueue.poll();
-                            publishProgress();
-                        }
-                    }, GUI_UPDATE_DELAY);
+                    schedulePublication(arrivalTime);
+                }
+                if (publishTime > 0 && SystemClock.uptimeMillis() >= publishTime)
+                {
+                    publishState();
                 }
             }
             catch (Exception e)
@@ -211,7 +290,11 @@ public class StateManager extends AsyncTask<Void, Void, Void>
             }
         }
 
+        coverLoader.stop();
         Logging.info(this, "stopped: " + toString());
+        Logging.info(this, "unknown messages: " + MessageFactory.getUnknownStatistics());
+        Logging.info(this, "cover cache: " + coverLoader.getCacheStatistics());
+        Logging.info(this, "update latency: " + latency.getStatistics());
         stateListener.onManagerStopped();
         return null;
     }
@@ -223,27 +306,126 @@ public class StateManager extends AsyncTask<Void, Void, Void>
         stateListener.onDeviceDisconnected();
     }
 
+    /**
+     * Parses the cached receiver information outside of the state thread and puts it into the input queue
+     */
+    private void parseCachedReceiverInformation()
+    {
+        final ReceiverInformationMsg msg = new ReceiverInformationMsg(cachedReceiverInformation);
+        cachedReceiverInformationMsg = msg;
+        AsyncTask.THREAD_POOL_EXECUTOR.execute(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    msg.parseXml();
+                    messageChannel.getInputQueue().offer(msg);
+                }
+                catch (Exception e)
+                {
+                    Logging.info(msg, "Can not parse cached XML: " + e.getLocalizedMessage());
+                }
+            }
+        });
+    }
+
     private boolean processMessage(@NonNull ISCPMessage msg)
     {
-        // skip time message, is necessary
-        if (msg instanceof TimeInfoMsg && skipNextTimeMsg.get() > 0)
+        // the cached receiver information is outdated if the device has answered meanwhile
+        if (msg == cachedReceiverInformationMsg)
+        {
+            cachedReceiverInformationMsg = null;
+            if (state.receiverInformation != null)
+            {
+                Logging.info(this, "cached receiver information ignored");
+                return false;
+            }
+            Logging.info(this, "using cached receiver information");
+            cachedDeviceId = ((ReceiverInformationMsg) msg).getDeviceId();
+        }
+        else if (msg instanceof ReceiverInformationMsg && cachedDeviceId != null)
+        {
+            // the cache is keyed by host and port: another device may answer at the same address
+            final ReceiverInformationMsg riMsg = (ReceiverInformationMsg) msg;
+            try
+            {
+                riMsg.parseXml();
+            }
+            catch (Exception e)
+            {
+                Logging.info(riMsg, "Can not parse XML: " + e.getLocalizedMessage());
+            }
+            if (!cachedDeviceId.equals(riMsg.getDeviceId()))
+            {
+                Logging.info(this, "cached receiver information of device " + cachedDeviceId
+                        + " dropped: connected device is " + riMsg.getDeviceId());
+                state.resetReceiverInformation();
+                eventChanges |= State.CHANGE_RECEIVER_INFO;
+            }
+            cachedDeviceId = null;
+        }
+
+        // user commands are shown at once and confirmed by the device later
+        if (msg instanceof OptimisticUpdates.CommandMsg)
+        {
+            return applyCommand(((OptimisticUpdates.CommandMsg) msg).getCommand());
+        }
+
+        // seek requests are sent from the state thread
+        if (msg == seekRequest)
+        {
+            final int target = seekTarget.getAndSet(-1);
+            if (target >= 0)
+            {
+                pendingSeek = target;
+            }
+            return sendPendingSeek();
+        }
+
+        // play queue commands are sent from the state thread
+        if (msg instanceof PlayQueueRequest)
+        {
+            final PlayQueueRequest r = (PlayQueueRequest) msg;
+            processPlayQueueMsg(r.msg, r.repeat);
+            return false;
+        }
+
+        // skip list pages requested for a list that is not shown anymore
+        if (msg instanceof XmlListInfoMsg && !isXmlListPageExpected((XmlListInfoMsg) msg))
+        {
+            Logging.info(this, "stale list page ignored: " + ((XmlListInfoMsg) msg).getSequenceNumber());
+            return false;
+        }
+
+        // cover images are loaded in background and come back as CoverMsg
+        if (msg instanceof JacketArtMsg)
+        {
+            coverLoader.process((JacketArtMsg) msg);
+            return false;
+        }
+
+        // an answer to a pending command is not shown while further answers are expected
+        if (!optimisticUpdates.confirm(msg))
         {
-            skipNextTimeMsg.set(Math.max(0, skipNextTimeMsg.get() - 1));
             return false;
         }
 
         final PlayStatusMsg.PlayStatus playStatus = state.playStatus;
-        final State.ChangeType changed = state.update(msg);
+        final int changed = state.update(msg);
+        eventChanges |= changed;
 
-        if (changed != State.ChangeType.NONE)
+        // a seek held back until the device has confirmed the previous one
+        if (msg instanceof TimeInfoMsg && pendingSeek >= 0)
         {
-            eventChanges.add(changed);
+            return sendPendingSeek() || changed != State.CHANGE_NONE;
         }
 
         // no further message handling, if power off
         if (!state.isOn())
         {
-            return changed != State.ChangeType.NONE;
+            return changed != State.CHANGE_NONE;
         }
 
         // on TrackInfoMsg, always do XML state request upon the next ListTitleInfoMsg
@@ -259,9 +441,7 @@ public class StateManager extends AsyncTask<Void, Void, Void>
             if (state.isUsb() && state.isTopLayer() && !state.listInfoConsistent())
             {
                 Logging.info(this, "requesting XML list state for USB...");
-                messageChannel.sendMessage(
-                        new EISCPMessage('1', XmlListInfoMsg.CODE, XmlListInfoMsg.getListedData(
-                                xmlReqId++, state.numberOfLayers, 0, state.numberOfItems)));
+                startXmlList(state.numberOfLayers, state.numberOfItems);
             }
         }
 
@@ -270,7 +450,7 @@ public class StateManager extends AsyncTask<Void, Void, Void>
             messageChannel.sendMessage(commandListMsg);
         }
 
-        if (changed == State.ChangeType.NONE)
+        if (changed == State.CHANGE_NONE)
         {
             if (msg instanceof ListTitleInfoMsg && requestXmlList.get())
             {
@@ -322,7 +502,7 @@ public class StateManager extends AsyncTask<Void, Void, Void>
             final ListTitleInfoMsg liMsg = (ListTitleInfoMsg) msg;
             if (circlePlayQueueMsg != null && liMsg.getNumberOfItems() > 0)
             {
-                sendPlayQueueMsg(circlePlayQueueMsg, true);
+                processPlayQueueMsg(circlePlayQueueMsg, true);
             }
             else
             {
@@ -349,18 +529,117 @@ public class StateManager extends AsyncTask<Void, Void, Void>
     }
 
     @Override
-    protected void onProgressUpdate(Void... result)
+    protected void onProgressUpdate(Publication... result)
+    {
+        for (Publication p : result)
+        {
+            final long start = SystemClock.uptimeMillis();
+            latency.add(start - p.arrivalTime);
+            stateListener.onStateChanged(p.state, p.changes);
+            renderTime = SystemClock.uptimeMillis() - start;
+        }
+    }
+
+    /**
+     * Waits for the next message. While changes, commands or a held seek are pending, the waiting ends
+     * with the current frame, the command timeout or the seek timeout and null is returned if no message
+     * arrived until then
+     */
+    private ISCPMessage takeMessage() throws InterruptedException
+    {
+        final BlockingQueue<ISCPMessage> queue = messageChannel.getInputQueue();
+        long wakeTime = getWakeTime(publishTime, optimisticUpdates.getDeadline());
+        if (pendingSeek >= 0)
+        {
+            wakeTime = getWakeTime(wakeTime, state.getSeekDeadline());
+        }
+        if (wakeTime == 0)
+        {
+            return queue.take();
+        }
+        final long timeout = wakeTime - SystemClock.uptimeMillis();
+        return timeout > 0 ? queue.poll(timeout, TimeUnit.MILLISECONDS) : queue.poll();
+    }
+
+    /**
+     * Returns the earlier of two wake times, where zero means no wake time
+     */
+    private static long getWakeTime(long t1, long t2)
     {
-        stateListener.onStateChanged(state, eventChanges);
-        eventChanges.clear();
+        return (t1 == 0 || t2 == 0) ? Math.max(t1, t2) : Math.min(t1, t2);
+    }
+
+    private boolean applyCommand(final ISCPMessage cmd)
+    {
+        if (!state.isOn())
+        {
+            return false;
+        }
+        final ISCPMessage result = optimisticUpdates.predict(state, cmd, SystemClock.uptimeMillis());
+        if (result == null)
+        {
+            return false;
+        }
+        final int changed = state.update(result);
+        eventChanges |= changed;
+        return changed != State.CHANGE_NONE;
+    }
+
+    /**
+     * Restores the confirmed values of the commands that are not answered in time
+     */
+    private void rollbackCommands(long now)
+    {
+        final long deadline = optimisticUpdates.getDeadline();
+        if (deadline == 0 || deadline > now)
+        {
+            return;
+        }
+        for (ISCPMessage msg : optimisticUpdates.expire(now))
+        {
+            Logging.info(this, "command not confirmed, restoring " + msg.toString());
+            final int changed = state.update(msg);
+            eventChanges |= changed;
+            if (changed != State.CHANGE_NONE)
+            {
+                schedulePublication(now);
+            }
+        }
+    }
+
+    private void schedulePublication(long arrivalTime)
+    {
+        if (publishTime > 0)
+        {
+            // the change will be published with the current frame
+            return;
+        }
+        final long frameInterval = Math.min(MAX_FRAME_INTERVAL, Math.max(MIN_FRAME_INTERVAL, 2 * renderTime));
+        changesArrivalTime = arrivalTime;
+        publishTime = Math.max(arrivalTime, lastPublishTime + frameInterval);
+    }
+
+    /**
+     * Hands over a snapshot of the state and the collected changes to the UI thread. Shall
+     * only be called from the state thread: the UI never reads the state being updated
+     */
+    private void publishState()
+    {
+        final State s = state.snapshot();
+        final int changes = eventChanges;
+        final long arrivalTime = publishTime > 0 ? changesArrivalTime : SystemClock.uptimeMillis();
+        eventChanges = State.CHANGE_NONE;
+        publishTime = 0;
+        lastPublishTime = SystemClock.uptimeMillis();
+        snapshot = s;
+        publishProgress(new Publication(s, changes, arrivalTime));
     }
 
     private void requestListState()
     {
         Logging.info(this, "requesting list state...");
         requestXmlList.set(true);
-        messageChannel.sendMessage(
-                new EISCPMessage('1', ListTitleInfoMsg.CODE, EISCPMessage.QUERY));
+        messageChannel.sendMessage(EISCPMessage.getQuery(ListTitleInfoMsg.CODE));
     }
 
     private void requestXmlListState(final ListTitleInfoMsg liMsg)
@@ -379,9 +658,46 @@ public class StateManager extends AsyncTask<Void, Void, Void>
         else if (liMsg.getNumberOfLayers() > 0)
         {
             Logging.info(this, "requesting XML list state");
-            messageChannel.sendMessage(
-                    new EISCPMessage('1', XmlListInfoMsg.CODE, XmlListInfoMsg.getListedData(
-                            xmlReqId++, liMsg.getNumberOfLayers(), 0, liMsg.getNumberOfItems())));
+            startXmlList(liMsg.getNumberOfLayers(), liMsg.getNumberOfItems());
+        }
+    }
+
+    private synchronized void startXmlList(final int layers, final int items)
+    {
+        xmlListFirstReqId = xmlReqId;
+        xmlListLayers = layers;
+        xmlListItems = items;
+        xmlListRequested = 0;
+        requestXmlListPage();
+    }
+
+    private void requestXmlListPage()
+    {
+        // an empty list is also requested once in order to get its (empty) content
+        final int count = Math.min(XML_LIST_PAGE_SIZE, xmlListItems - xmlListRequested);
+        Logging.info(this, "requesting XML list page: " + xmlListRequested + "+" + count);
+        messageChannel.sendMessage(
+                new EISCPMessage('1', XmlListInfoMsg.CODE, XmlListInfoMsg.getListedData(
+                        xmlReqId++, xmlListLayers, xmlListRequested, count)));
+        xmlListRequested += count;
+    }
+
+    private synchronized boolean isXmlListPageExpected(final XmlListInfoMsg msg)
+    {
+        final int age = (msg.getSequenceNumber() - xmlListFirstReqId) & XML_SEQ_MASK;
+        return age < ((xmlReqId - xmlListFirstReqId) & XML_SEQ_MASK);
+    }
+
+    /**
+     * Requests the next page of the current media list if the given item is
+     * within the prefetch margin of the items requested so far
+     */
+    public synchronized void requestXmlListItems(final int lastVisibleItem)
+    {
+        if (xmlListLayers > 0 && xmlListRequested < xmlListItems
+                && lastVisibleItem + XML_LIST_PREFETCH >= xmlListRequested)
+        {
+            requestXmlListPage();
         }
     }
 
@@ -389,8 +705,9 @@ public class StateManager extends AsyncTask<Void, Void, Void>
     {
         Logging.info(this, "sending message: " + msg.toString());
         circlePlayQueueMsg = null;
+        // called from the UI thread: the published snapshot is used instead of the state
         if (msg.hasImpactOnMediaList() ||
-                (msg instanceof DisplayModeMsg && !state.isPlaybackMode()))
+                (msg instanceof DisplayModeMsg && !snapshot.isPlaybackMode()))
         {
             requestXmlList.set(true);
         }
@@ -398,27 +715,71 @@ public class StateManager extends AsyncTask<Void, Void, Void>
         if (cmdMsg != null)
         {
             messageChannel.sendMessage(cmdMsg);
+            if (OptimisticUpdates.isSupported(msg))
+            {
+                messageChannel.getInputQueue().offer(new OptimisticUpdates.CommandMsg(msg));
+            }
         }
     }
 
     public void sendPlayQueueMsg(ISCPMessage msg, boolean repeat)
     {
-        if (msg == null)
+        if (msg != null)
         {
-            return;
+            messageChannel.getInputQueue().offer(new PlayQueueRequest(msg, repeat));
         }
+    }
+
+    private void processPlayQueueMsg(ISCPMessage msg, boolean repeat)
+    {
         if (repeat)
         {
             Logging.info(this, "starting repeat mode: " + msg.toString());
             circlePlayQueueMsg = msg;
         }
+        state.clearMediaListCache();
         requestXmlList.set(true);
         messageChannel.sendMessage(msg.getCmdMsg());
     }
 
-    public void requestSkipNextTimeMsg(final int number)
+    /**
+     * Called by the cover view when it does not show the cover of a state anymore, see State.coverTicket.
+     * The memory of the cover may be reused for later covers then
+     */
+    public static void releaseCover(final Context context, final Bitmap cover, final int ticket)
+    {
+        CoverLoader.releaseCover(context, cover, ticket);
+    }
+
+    /**
+     * Requests a seek to the given elapsed time. Scrub events are coalesced: while a seek
+     * is not confirmed by the device, only the latest target is kept and sent afterwards
+     */
+    public void requestSeek(final int seconds)
+    {
+        if (seekTarget.getAndSet(seconds) < 0)
+        {
+            messageChannel.getInputQueue().offer(seekRequest);
+        }
+    }
+
+    private boolean sendPendingSeek()
     {
-        skipNextTimeMsg.set(number);
+        final long now = SystemClock.uptimeMillis();
+        if (pendingSeek < 0 || state.isSeeking(now))
+        {
+            return false;
+        }
+        final int hour = pendingSeek / 3600;
+        final int min = (pendingSeek - hour * 3600) / 60;
+        final int sec = pendingSeek - hour * 3600 - min * 60;
+        final TimeSeekMsg msg = new TimeSeekMsg(hour, min, sec);
+        Logging.info(this, "sending message: " + msg.toString());
+        messageChannel.sendMessage(msg.getCmdMsg());
+        final int changed = state.startSeek(pendingSeek, now);
+        eventChanges |= changed;
+        pendingSeek = -1;
+        return changed != State.CHANGE_NONE;
     }
 
     private void sendQueries(final String[] queries, final String purpose)
@@ -426,19 +787,18 @@ public class StateManager extends AsyncTask<Void, Void, Void>
         Logging.info(this, purpose);
         for (String code : queries)
         {
-            messageChannel.sendMessage(
-                    new EISCPMessage('1', code, EISCPMessage.QUERY));
+            messageChannel.sendMessage(EISCPMessage.getQuery(code));
         }
     }
 
     public void sendTrackCmd(OperationCommandMsg.Command menu, boolean doReturn)
     {
         Logging.info(this, "sending track cmd: " + menu.toString());
-        if (!state.isPlaybackMode())
+        if (!snapshot.isPlaybackMode())
         {
             messageChannel.sendMessage(commandListMsg);
         }
-        messageChannel.sendMessage(new EISCPMessage('1',
+        messageChannel.sendMessage(EISCPMessage.getConstant(
                 OperationCommandMsg.CODE, menu.getCode()));
         if (doReturn)
         {
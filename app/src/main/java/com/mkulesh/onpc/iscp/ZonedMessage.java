@@ -17,18 +17,10 @@ public abstract class ZonedMessage extends ISCPMessage
 {
     protected int zoneIndex;
 
-    protected ZonedMessage(EISCPMessage raw, final String[] zoneCommands) throws Exception
+    protected ZonedMessage(EISCPMessage raw, int zoneIndex) throws Exception
     {
         super(raw);
-        for (int i = 0; i < zoneCommands.length; i++)
-        {
-            if (zoneCommands[i].toUpperCase().equals(raw.getCode().toUpperCase()))
-            {
-                zoneIndex = i;
-                return;
-            }
-        }
-        throw new Exception("No zone defined for message " + raw.getCode());
+        this.zoneIndex = zoneIndex;
     }
 
     protected ZonedMessage(final int messageId, final String data, int zoneIndex)
@@ -61,9 +61,9 @@ public class AudioMutingMsg extends ZonedMessage
 
     private final Status status;
 
-    AudioMutingMsg(EISCPMessage raw) throws Exception
+    AudioMutingMsg(EISCPMessage raw, int zoneIndex) throws Exception
     {
-        super(raw, ZONE_COMMANDS);
+        super(raw, zoneIndex);
         status = (Status) searchParameter(data, Status.values(), Status.NONE);
     }
 
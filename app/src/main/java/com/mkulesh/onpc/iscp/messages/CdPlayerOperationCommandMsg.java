@@ -146,7 +146,7 @@ public class CdPlayerOperationCommandMsg extends ISCPMessage
     @Override
     public EISCPMessage getCmdMsg()
     {
-        return command == null ? null : new EISCPMessage('1', CODE, command.getCmd());
+        return command == null ? null : EISCPMessage.getConstant(CODE, command.getCmd());
     }
 
     @Override
@@ -107,9 +107,9 @@ public class InputSelectorMsg extends ZonedMessage
 
     private final InputType inputType;
 
-    InputSelectorMsg(EISCPMessage raw) throws Exception
+    InputSelectorMsg(EISCPMessage raw, int zoneIndex) throws Exception
     {
-        super(raw, ZONE_COMMANDS);
+        super(raw, zoneIndex);
         inputType = (InputType) searchParameter(data, InputType.values(), InputType.NONE);
     }
 
@@ -13,16 +13,16 @@
 
 package com.mkulesh.onpc.iscp.messages;
 
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
-
 import com.mkulesh.onpc.iscp.EISCPMessage;
 import com.mkulesh.onpc.iscp.ISCPMessage;
+import com.mkulesh.onpc.utils.HexCodec;
 import com.mkulesh.onpc.utils.Logging;
 import com.mkulesh.onpc.utils.Utils;
 
-import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.net.URL;
+import java.net.URLConnection;
+import java.util.Arrays;
 
 /*
  * NET/USB Jacket Art (When Jacket Art is available and Output for Network Control Only)
@@ -75,7 +75,7 @@ public class JacketArtMsg extends ISCPMessage
     private PacketFlag packetFlag = PacketFlag.NOT_USED;
 
     private URL url = null;
-    private byte[] rawData = null;
+    private boolean rawData = false;
 
     JacketArtMsg(EISCPMessage raw) throws Exception
     {
@@ -97,7 +97,8 @@ public class JacketArtMsg extends ISCPMessage
                 break;
             case BMP:
             case JPEG:
-                rawData = convertRaw(data.substring(2));
+                // hex data is decoded directly into the cover buffer, see getRawData
+                rawData = true;
                 break;
             case NO_IMAGE:
                 // nothing to do;
@@ -117,11 +118,27 @@ public class JacketArtMsg extends ISCPMessage
         return packetFlag;
     }
 
-    public byte[] getRawData()
+    public boolean isRawData()
     {
         return rawData;
     }
 
+    /**
+     * Number of binary bytes encoded in this packet
+     */
+    public int getRawLength()
+    {
+        return rawData ? (data.length() - 2) / 2 : 0;
+    }
+
+    /**
+     * Decodes the hex data of this packet into the given array and returns the number of written bytes
+     */
+    public int getRawData(final byte[] dst, final int offset)
+    {
+        return rawData ? HexCodec.decodeBytes(data, 2, data.length(), dst, offset) : 0;
+    }
+
     @Override
     public String toString()
     {
@@ -129,84 +146,38 @@ public class JacketArtMsg extends ISCPMessage
                 + "; TYPE=" + imageType.toString()
                 + "; PACKET=" + packetFlag.toString()
                 + "; URL=" + url
-                + "; RAW(" + (rawData == null ? "null" : rawData.length) + ")"
+                + "; RAW(" + (rawData ? getRawLength() : "null") + ")"
                 + "]";
     }
 
-    private byte[] convertRaw(String str)
+    public URL getUrl()
     {
-        byte[] bytes = new byte[str.length() / 2];
-        for (int i = 0; i < bytes.length; i++)
-        {
-            final int j1 = 2 * i;
-            final int j2 = 2 * i + 1;
-            if (j1 < str.length() && j2 < str.length())
-            {
-                bytes[i] = (byte) Integer.parseInt(str.substring(j1, j2 + 1), 16);
-            }
-        }
-        return bytes;
+        return url;
     }
 
-    public Bitmap loadFromUrl()
+    /**
+     * Reads the encoded image from a connection to the image URL, or returns null if the response has no image
+     */
+    public byte[] readImage(final URLConnection connection) throws IOException
     {
-        Bitmap cover = null;
-        try
-        {
-            Logging.info(this, "loading image from URL: " + url.toString());
+        Logging.info(this, "loading image from URL: " + url.toString());
 
-            byte[] bytes = Utils.streamToByteArray(url.openConnection().getInputStream());
-            int offset = 1;
-            for (; offset < bytes.length; offset++)
-            {
-                if (bytes[offset] == 0x0A && bytes[offset - 1] == 0x0A)
-                {
-                    break;
-                }
-            }
-            offset++;
-            final int length = bytes.length - offset;
-            if (length > 0)
+        byte[] bytes = Utils.streamToByteArray(connection.getInputStream());
+        int offset = 1;
+        for (; offset < bytes.length; offset++)
+        {
+            if (bytes[offset] == 0x0A && bytes[offset - 1] == 0x0A)
             {
-                Logging.info(this, "Cover image size length=" + length);
-                cover = BitmapFactory.decodeByteArray(bytes, offset, length);
+                break;
             }
         }
-        catch (Exception e)
-        {
-            Logging.info(this, "can not open image: " + e.getLocalizedMessage());
-        }
-        if (cover == null)
-        {
-            Logging.info(this, "can not open image");
-        }
-        return cover;
-    }
-
-    public Bitmap loadFromBuffer(ByteArrayOutputStream coverBuffer)
-    {
-        if (coverBuffer == null)
-        {
-            Logging.info(this, "can not open image: empty stream");
-            return null;
-        }
-        Bitmap cover = null;
-        try
-        {
-            Logging.info(this, "loading image from stream");
-            coverBuffer.flush();
-            coverBuffer.close();
-            final byte out[] = coverBuffer.toByteArray();
-            cover = BitmapFactory.decodeByteArray(out, 0, out.length);
-        }
-        catch (Exception e)
-        {
-            Logging.info(this, "can not open image: " + e.getLocalizedMessage());
-        }
-        if (cover == null)
+        offset++;
+        final int length = bytes.length - offset;
+        if (length > 0)
         {
-            Logging.info(this, "can not open image");
+            Logging.info(this, "Cover image size length=" + length);
+            return Arrays.copyOfRange(bytes, offset, bytes.length);
         }
-        return cover;
+        return null;
     }
 }
@@ -15,6 +15,7 @@ package com.mkulesh.onpc.iscp.messages;
 
 import com.mkulesh.onpc.iscp.EISCPMessage;
 import com.mkulesh.onpc.iscp.ISCPMessage;
+import com.mkulesh.onpc.utils.HexCodec;
 
 /*
  * NET/USB List Info (Update item, need processing XML data, for Network Control Only)
@@ -28,8 +29,8 @@ public class ListItemInfoMsg extends ISCPMessage
     ListItemInfoMsg(EISCPMessage raw) throws Exception
     {
         super(raw);
-        index = Integer.parseInt(data.substring(0, 4), 16);
-        number = Integer.parseInt(data.substring(4, 8), 16);
+        index = HexCodec.decode(data, 0, 4);
+        number = HexCodec.decode(data, 4, 8);
     }
 
     @Override
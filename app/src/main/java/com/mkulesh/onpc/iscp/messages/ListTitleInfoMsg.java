@@ -15,6 +15,7 @@ package com.mkulesh.onpc.iscp.messages;
 
 import com.mkulesh.onpc.iscp.EISCPMessage;
 import com.mkulesh.onpc.iscp.ISCPMessage;
+import com.mkulesh.onpc.utils.HexCodec;
 
 /*
  * NET/USB List Title Info
@@ -261,9 +262,9 @@ public class ListTitleInfoMsg extends ISCPMessage
             serviceType = (ServiceType) searchParameter(data.substring(0, 2), ServiceType.values(), serviceType);
             uiType = (UIType) searchParameter(data.charAt(2), UIType.values(), uiType);
             layerInfo = (LayerInfo) searchParameter(data.charAt(3), LayerInfo.values(), layerInfo);
-            currentCursorPosition = Integer.parseInt(data.substring(4, 8), 16);
-            numberOfItems = Integer.parseInt(data.substring(8, 12), 16);
-            numberOfLayers = Integer.parseInt(data.substring(12, 14), 16);
+            currentCursorPosition = HexCodec.decode(data, 4, 8);
+            numberOfItems = HexCodec.decode(data, 8, 12);
+            numberOfLayers = HexCodec.decode(data, 12, 14);
             startFlag = (StartFlag) searchParameter(data.charAt(14), StartFlag.values(), startFlag);
             leftIcon = (LeftIcon) searchParameter(data.substring(16, 18), LeftIcon.values(), leftIcon);
             rightIcon = (RightIcon) searchParameter(data.substring(18, 20), RightIcon.values(), rightIcon);
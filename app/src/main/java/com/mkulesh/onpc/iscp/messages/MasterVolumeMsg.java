@@ -16,6 +16,7 @@ package com.mkulesh.onpc.iscp.messages;
 import com.mkulesh.onpc.R;
 import com.mkulesh.onpc.iscp.EISCPMessage;
 import com.mkulesh.onpc.iscp.ZonedMessage;
+import com.mkulesh.onpc.utils.HexCodec;
 
 /*
  * Master Volume Command
@@ -30,6 +31,7 @@ public class MasterVolumeMsg extends ZonedMessage
     public final static String[] ZONE_COMMANDS = new String[]{ CODE, ZONE2_CODE, ZONE3_CODE, ZONE4_CODE };
 
     public final static int NO_LEVEL = -1;
+    public final static int MAX_VOLUME_DB = 100; // used if the receiver information has no maximum
 
     public enum Command implements StringParameterIf
     {
@@ -66,12 +68,12 @@ public class MasterVolumeMsg extends ZonedMessage
     private final Command command;
     private int volumeLevel = NO_LEVEL;
 
-    MasterVolumeMsg(EISCPMessage raw) throws Exception
+    MasterVolumeMsg(EISCPMessage raw, int zoneIndex) throws Exception
     {
-        super(raw, ZONE_COMMANDS);
+        super(raw, zoneIndex);
         try
         {
-            volumeLevel = Integer.parseInt(data, 16);
+            volumeLevel = HexCodec.decode(data);
         }
         catch (Exception e)
         {
@@ -86,12 +88,24 @@ public class MasterVolumeMsg extends ZonedMessage
         this.command = level;
     }
 
+    public MasterVolumeMsg(int zoneIndex, int volumeLevel)
+    {
+        super(0, null, zoneIndex);
+        this.command = null;
+        this.volumeLevel = volumeLevel;
+    }
+
     @Override
     public String getZoneCommand()
     {
         return ZONE_COMMANDS[zoneIndex];
     }
 
+    public Command getCommand()
+    {
+        return command;
+    }
+
     public int getVolumeLevel()
     {
         return volumeLevel;
@@ -109,7 +123,11 @@ public class MasterVolumeMsg extends ZonedMessage
     @Override
     public EISCPMessage getCmdMsg()
     {
-        return new EISCPMessage('1', getZoneCommand(), command.getCode());
+        if (command == null)
+        {
+            return new EISCPMessage('1', getZoneCommand(), HexCodec.appendUpperCase(new StringBuilder(2), volumeLevel, 2).toString());
+        }
+        return EISCPMessage.getConstant(getZoneCommand(), command.getCode());
     }
 
     @Override
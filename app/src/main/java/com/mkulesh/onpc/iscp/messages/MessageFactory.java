@@ -13,6 +13,9 @@
 
 package com.mkulesh.onpc.iscp.messages;
 
+import android.util.SparseArray;
+import android.util.SparseIntArray;
+
 import com.mkulesh.onpc.iscp.EISCPMessage;
 import com.mkulesh.onpc.iscp.ISCPMessage;
 
@@ -21,92 +24,372 @@ import com.mkulesh.onpc.iscp.ISCPMessage;
  */
 public class MessageFactory
 {
+    /**
+     * Constructor of a message for the given raw message and zone index
+     */
+    public interface Creator
+    {
+        ISCPMessage create(EISCPMessage raw, int zoneIndex) throws Exception;
+    }
+
+    private static class Entry
+    {
+        final Creator creator;
+        final int zoneIndex;
+
+        Entry(final Creator creator, final int zoneIndex)
+        {
+            this.creator = creator;
+            this.zoneIndex = zoneIndex;
+        }
+    }
+
+    // Registered creators indexed by the packed message code
+    private final static SparseArray<Entry> creators = new SparseArray<>();
+
+    // Optional statistics: number of received messages per unsupported code
+    private static SparseIntArray unknownCodes = null;
+
+    static
+    {
+        register(PowerStatusMsg.ZONE_COMMANDS, new Creator()
+        {
+            @Override
+            public ISCPMessage create(EISCPMessage raw, int zoneIndex) throws Exception
+            {
+                return new PowerStatusMsg(raw, zoneIndex);
+            }
+        });
+        register(FirmwareUpdateMsg.CODE, new Creator()
+        {
+            @Override
+            public ISCPMessage create(EISCPMessage raw, int zoneIndex) throws Exception
+            {
+                return new FirmwareUpdateMsg(raw);
+            }
+        });
+        register(ReceiverInformationMsg.CODE, new Creator()
+        {
+            @Override
+            public ISCPMessage create(EISCPMessage raw, int zoneIndex) throws Exception
+            {
+                return new ReceiverInformationMsg(raw);
+            }
+        });
+        register(DeviceNameMsg.CODE, new Creator()
+        {
+            @Override
+            public ISCPMessage create(EISCPMessage raw, int zoneIndex) throws Exception
+            {
+                return new DeviceNameMsg(raw);
+            }
+        });
+        register(InputSelectorMsg.ZONE_COMMANDS, new Creator()
+        {
+            @Override
+            public ISCPMessage create(EISCPMessage raw, int zoneIndex) throws Exception
+            {
+                return new InputSelectorMsg(raw, zoneIndex);
+            }
+        });
+        register(TimeInfoMsg.CODE, new Creator()
+        {
+            @Override
+            public ISCPMessage create(EISCPMessage raw, int zoneIndex) throws Exception
+            {
+                return new TimeInfoMsg(raw);
+            }
+        });
+        register(JacketArtMsg.CODE, new Creator()
+        {
+            @Override
+            public ISCPMessage create(EISCPMessage raw, int zoneIndex) throws Exception
+            {
+                return new JacketArtMsg(raw);
+            }
+        });
+        register(TitleNameMsg.CODE, new Creator()
+        {
+            @Override
+            public ISCPMessage create(EISCPMessage raw, int zoneIndex) throws Exception
+            {
+                return new TitleNameMsg(raw);
+            }
+        });
+        register(AlbumNameMsg.CODE, new Creator()
+        {
+            @Override
+            public ISCPMessage create(EISCPMessage raw, int zoneIndex) throws Exception
+            {
+                return new AlbumNameMsg(raw);
+            }
+        });
+        register(ArtistNameMsg.CODE, new Creator()
+        {
+            @Override
+            public ISCPMessage create(EISCPMessage raw, int zoneIndex) throws Exception
+            {
+                return new ArtistNameMsg(raw);
+            }
+        });
+        register(FileFormatMsg.CODE, new Creator()
+        {
+            @Override
+            public ISCPMessage create(EISCPMessage raw, int zoneIndex) throws Exception
+            {
+                return new FileFormatMsg(raw);
+            }
+        });
+        register(TrackInfoMsg.CODE, new Creator()
+        {
+            @Override
+            public ISCPMessage create(EISCPMessage raw, int zoneIndex) throws Exception
+            {
+                return new TrackInfoMsg(raw);
+            }
+        });
+        register(PlayStatusMsg.CODE, new Creator()
+        {
+            @Override
+            public ISCPMessage create(EISCPMessage raw, int zoneIndex) throws Exception
+            {
+                return new PlayStatusMsg(raw);
+            }
+        });
+        register(ListTitleInfoMsg.CODE, new Creator()
+        {
+            @Override
+            public ISCPMessage create(EISCPMessage raw, int zoneIndex) throws Exception
+            {
+                return new ListTitleInfoMsg(raw);
+            }
+        });
+        register(ListInfoMsg.CODE, new Creator()
+        {
+            @Override
+            public ISCPMessage create(EISCPMessage raw, int zoneIndex) throws Exception
+            {
+                return new ListInfoMsg(raw);
+            }
+        });
+        register(ListItemInfoMsg.CODE, new Creator()
+        {
+            @Override
+            public ISCPMessage create(EISCPMessage raw, int zoneIndex) throws Exception
+            {
+                return new ListItemInfoMsg(raw);
+            }
+        });
+        register(MenuStatusMsg.CODE, new Creator()
+        {
+            @Override
+            public ISCPMessage create(EISCPMessage raw, int zoneIndex) throws Exception
+            {
+                return new MenuStatusMsg(raw);
+            }
+        });
+        register(XmlListInfoMsg.CODE, new Creator()
+        {
+            @Override
+            public ISCPMessage create(EISCPMessage raw, int zoneIndex) throws Exception
+            {
+                return new XmlListInfoMsg(raw);
+            }
+        });
+        register(DisplayModeMsg.CODE, new Creator()
+        {
+            @Override
+            public ISCPMessage create(EISCPMessage raw, int zoneIndex) throws Exception
+            {
+                return new DisplayModeMsg(raw);
+            }
+        });
+        register(DimmerLevelMsg.CODE, new Creator()
+        {
+            @Override
+            public ISCPMessage create(EISCPMessage raw, int zoneIndex) throws Exception
+            {
+                return new DimmerLevelMsg(raw);
+            }
+        });
+        register(DigitalFilterMsg.CODE, new Creator()
+        {
+            @Override
+            public ISCPMessage create(EISCPMessage raw, int zoneIndex) throws Exception
+            {
+                return new DigitalFilterMsg(raw);
+            }
+        });
+        register(AudioMutingMsg.ZONE_COMMANDS, new Creator()
+        {
+            @Override
+            public ISCPMessage create(EISCPMessage raw, int zoneIndex) throws Exception
+            {
+                return new AudioMutingMsg(raw, zoneIndex);
+            }
+        });
+        register(MasterVolumeMsg.ZONE_COMMANDS, new Creator()
+        {
+            @Override
+            public ISCPMessage create(EISCPMessage raw, int zoneIndex) throws Exception
+            {
+                return new MasterVolumeMsg(raw, zoneIndex);
+            }
+        });
+        register(AutoPowerMsg.CODE, new Creator()
+        {
+            @Override
+            public ISCPMessage create(EISCPMessage raw, int zoneIndex) throws Exception
+            {
+                return new AutoPowerMsg(raw);
+            }
+        });
+        register(CustomPopupMsg.CODE, new Creator()
+        {
+            @Override
+            public ISCPMessage create(EISCPMessage raw, int zoneIndex) throws Exception
+            {
+                return new CustomPopupMsg(raw);
+            }
+        });
+        register(GoogleCastVersionMsg.CODE, new Creator()
+        {
+            @Override
+            public ISCPMessage create(EISCPMessage raw, int zoneIndex) throws Exception
+            {
+                return new GoogleCastVersionMsg(raw);
+            }
+        });
+        register(GoogleCastAnalyticsMsg.CODE, new Creator()
+        {
+            @Override
+            public ISCPMessage create(EISCPMessage raw, int zoneIndex) throws Exception
+            {
+                return new GoogleCastAnalyticsMsg(raw);
+            }
+        });
+        register(ListeningModeMsg.CODE, new Creator()
+        {
+            @Override
+            public ISCPMessage create(EISCPMessage raw, int zoneIndex) throws Exception
+            {
+                return new ListeningModeMsg(raw);
+            }
+        });
+        register(HdmiCecMsg.CODE, new Creator()
+        {
+            @Override
+            public ISCPMessage create(EISCPMessage raw, int zoneIndex) throws Exception
+            {
+                return new HdmiCecMsg(raw);
+            }
+        });
+        register(SpeakerACommandMsg.ZONE_COMMANDS, new Creator()
+        {
+            @Override
+            public ISCPMessage create(EISCPMessage raw, int zoneIndex) throws Exception
+            {
+                return new SpeakerACommandMsg(raw, zoneIndex);
+            }
+        });
+        register(SpeakerBCommandMsg.ZONE_COMMANDS, new Creator()
+        {
+            @Override
+            public ISCPMessage create(EISCPMessage raw, int zoneIndex) throws Exception
+            {
+                return new SpeakerBCommandMsg(raw, zoneIndex);
+            }
+        });
+        register(PrivacyPolicyStatusMsg.CODE, new Creator()
+        {
+            @Override
+            public ISCPMessage create(EISCPMessage raw, int zoneIndex) throws Exception
+            {
+                return new PrivacyPolicyStatusMsg(raw);
+            }
+        });
+        register(CdPlayerOperationCommandMsg.CODE, new Creator()
+        {
+            @Override
+            public ISCPMessage create(EISCPMessage raw, int zoneIndex) throws Exception
+            {
+                return new CdPlayerOperationCommandMsg(raw);
+            }
+        });
+    }
+
+    /**
+     * Registers a creator for a message code
+     */
+    public static void register(final String code, final Creator creator)
+    {
+        register(new String[]{ code }, creator);
+    }
+
+    /**
+     * Registers a creator for zone-dependent message codes: the index of a code
+     * within the given array is passed to the creator as zone index. A code used
+     * for several zones keeps its first index
+     */
+    public static void register(final String[] zoneCommands, final Creator creator)
+    {
+        synchronized (creators)
+        {
+            for (int i = 0; i < zoneCommands.length; i++)
+            {
+                final int code = EISCPMessage.packCode(zoneCommands[i]);
+                if (creators.get(code) == null)
+                {
+                    creators.put(code, new Entry(creator, i));
+                }
+            }
+        }
+    }
+
     public static ISCPMessage create(EISCPMessage raw) throws Exception
     {
-        switch (raw.getCode().toUpperCase())
-        {
-        case PowerStatusMsg.CODE:
-        case PowerStatusMsg.ZONE2_CODE:
-        case PowerStatusMsg.ZONE3_CODE:
-        case PowerStatusMsg.ZONE4_CODE:
-            return new PowerStatusMsg(raw);
-        case FirmwareUpdateMsg.CODE:
-            return new FirmwareUpdateMsg(raw);
-        case ReceiverInformationMsg.CODE:
-            return new ReceiverInformationMsg(raw);
-        case DeviceNameMsg.CODE:
-            return new DeviceNameMsg(raw);
-        case InputSelectorMsg.CODE:
-        case InputSelectorMsg.ZONE2_CODE:
-        case InputSelectorMsg.ZONE3_CODE:
-        case InputSelectorMsg.ZONE4_CODE:
-            return new InputSelectorMsg(raw);
-        case TimeInfoMsg.CODE:
-            return new TimeInfoMsg(raw);
-        case JacketArtMsg.CODE:
-            return new JacketArtMsg(raw);
-        case TitleNameMsg.CODE:
-            return new TitleNameMsg(raw);
-        case AlbumNameMsg.CODE:
-            return new AlbumNameMsg(raw);
-        case ArtistNameMsg.CODE:
-            return new ArtistNameMsg(raw);
-        case FileFormatMsg.CODE:
-            return new FileFormatMsg(raw);
-        case TrackInfoMsg.CODE:
-            return new TrackInfoMsg(raw);
-        case PlayStatusMsg.CODE:
-            return new PlayStatusMsg(raw);
-        case ListTitleInfoMsg.CODE:
-            return new ListTitleInfoMsg(raw);
-        case ListInfoMsg.CODE:
-            return new ListInfoMsg(raw);
-        case ListItemInfoMsg.CODE:
-            return new ListItemInfoMsg(raw);
-        case MenuStatusMsg.CODE:
-            return new MenuStatusMsg(raw);
-        case XmlListInfoMsg.CODE:
-            return new XmlListInfoMsg(raw);
-        case DisplayModeMsg.CODE:
-            return new DisplayModeMsg(raw);
-        case DimmerLevelMsg.CODE:
-            return new DimmerLevelMsg(raw);
-        case DigitalFilterMsg.CODE:
-            return new DigitalFilterMsg(raw);
-        case AudioMutingMsg.CODE:
-        case AudioMutingMsg.ZONE2_CODE:
-        case AudioMutingMsg.ZONE3_CODE:
-        case AudioMutingMsg.ZONE4_CODE:
-            return new AudioMutingMsg(raw);
-        case MasterVolumeMsg.CODE:
-        case MasterVolumeMsg.ZONE2_CODE:
-        case MasterVolumeMsg.ZONE3_CODE:
-        case MasterVolumeMsg.ZONE4_CODE:
-            return new MasterVolumeMsg(raw);
-        case AutoPowerMsg.CODE:
-            return new AutoPowerMsg(raw);
-        case CustomPopupMsg.CODE:
-            return new CustomPopupMsg(raw);
-        case GoogleCastVersionMsg.CODE:
-            return new GoogleCastVersionMsg(raw);
-        case GoogleCastAnalyticsMsg.CODE:
-            return new GoogleCastAnalyticsMsg(raw);
-        case ListeningModeMsg.CODE:
-            return new ListeningModeMsg(raw);
-        case HdmiCecMsg.CODE:
-            return new HdmiCecMsg(raw);
-        case SpeakerACommandMsg.CODE:
-        case SpeakerACommandMsg.ZONE2_CODE:
-            return new SpeakerACommandMsg(raw);
-        case SpeakerBCommandMsg.CODE:
-        case SpeakerBCommandMsg.ZONE2_CODE:
-            return new SpeakerBCommandMsg(raw);
-        case PrivacyPolicyStatusMsg.CODE:
-            return new PrivacyPolicyStatusMsg(raw);
-        case CdPlayerOperationCommandMsg.CODE:
-            return new CdPlayerOperationCommandMsg(raw);
-        default:
-            throw new Exception("No factory method for message " + raw.getCode());
+        final Entry entry;
+        synchronized (creators)
+        {
+            entry = creators.get(raw.getCodeId());
+        }
+        if (entry == null)
+        {
+            countUnknownCode(raw.getCodeId());
+            return new UnknownMsg(raw);
+        }
+        return entry.creator.create(raw, entry.zoneIndex);
+    }
+
+    /**
+     * Enables or disables counting of received messages with unsupported codes
+     */
+    public static synchronized void setUnknownStatistics(boolean enabled)
+    {
+        unknownCodes = enabled ? new SparseIntArray() : null;
+    }
+
+    private static synchronized void countUnknownCode(int codeId)
+    {
+        if (unknownCodes != null)
+        {
+            unknownCodes.put(codeId, unknownCodes.get(codeId, 0) + 1);
+        }
+    }
+
+    /**
+     * Returns the number of received messages per unsupported code, or an empty
+     * string if statistics is disabled
+     */
+    public static synchronized String getUnknownStatistics()
+    {
+        final StringBuilder res = new StringBuilder();
+        for (int i = 0; unknownCodes != null && i < unknownCodes.size(); i++)
+        {
+            res.append(res.length() > 0 ? ", " : "")
+                    .append(EISCPMessage.unpackCode(unknownCodes.keyAt(i)))
+                    .append("=").append(unknownCodes.valueAt(i));
         }
+        return res.toString();
     }
 }
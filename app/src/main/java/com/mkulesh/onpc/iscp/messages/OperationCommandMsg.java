@@ -154,7 +154,7 @@ public class OperationCommandMsg extends ZonedMessage
     @Override
     public EISCPMessage getCmdMsg()
     {
-        return command == null ? null : new EISCPMessage('1', getZoneCommand(), command.getCode());
+        return command == null ? null : EISCPMessage.getConstant(getZoneCommand(), command.getCode());
     }
 
     @Override
@@ -15,6 +15,7 @@ package com.mkulesh.onpc.iscp.messages;
 
 import com.mkulesh.onpc.iscp.EISCPMessage;
 import com.mkulesh.onpc.iscp.ISCPMessage;
+import com.mkulesh.onpc.utils.HexCodec;
 
 /*
  * Add PlayQueue List in List View (from Network Control Only)
@@ -51,9 +52,10 @@ public class PlayQueueAddMsg extends ISCPMessage
     @Override
     public EISCPMessage getCmdMsg()
     {
-        final String param = String.format("%04x", itemIndex) +
-                Integer.toString(type) +
-                String.format("%04x", targetIndex);
-        return new EISCPMessage('1', CODE, param);
+        final StringBuilder param = new StringBuilder();
+        HexCodec.append(param, itemIndex, 4);
+        param.append(type);
+        HexCodec.append(param, targetIndex, 4);
+        return new EISCPMessage('1', CODE, param.toString());
     }
 }
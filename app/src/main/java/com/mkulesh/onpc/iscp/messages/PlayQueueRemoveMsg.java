@@ -15,6 +15,7 @@ package com.mkulesh.onpc.iscp.messages;
 
 import com.mkulesh.onpc.iscp.EISCPMessage;
 import com.mkulesh.onpc.iscp.ISCPMessage;
+import com.mkulesh.onpc.utils.HexCodec;
 
 /*
  * Remove from PlayQueue List (from Network Control Only)
@@ -45,8 +46,8 @@ public class PlayQueueRemoveMsg extends ISCPMessage
     @Override
     public EISCPMessage getCmdMsg()
     {
-        final String param = Integer.toString(type) +
-                String.format("%04x", itemIndex);
-        return new EISCPMessage('1', CODE, param);
+        final StringBuilder param = new StringBuilder().append(type);
+        HexCodec.append(param, itemIndex, 4);
+        return new EISCPMessage('1', CODE, param.toString());
     }
 }
@@ -15,6 +15,7 @@ package com.mkulesh.onpc.iscp.messages;
 
 import com.mkulesh.onpc.iscp.EISCPMessage;
 import com.mkulesh.onpc.iscp.ISCPMessage;
+import com.mkulesh.onpc.utils.HexCodec;
 
 /*
  * Reorder PlayQueue List (from Network Control Only)
@@ -47,8 +48,9 @@ public class PlayQueueReorderMsg extends ISCPMessage
     @Override
     public EISCPMessage getCmdMsg()
     {
-        final String param = String.format("%04x", itemIndex) +
-                String.format("%04x", targetIndex);
-        return new EISCPMessage('1', CODE, param);
+        final StringBuilder param = new StringBuilder();
+        HexCodec.append(param, itemIndex, 4);
+        HexCodec.append(param, targetIndex, 4);
+        return new EISCPMessage('1', CODE, param.toString());
     }
 }
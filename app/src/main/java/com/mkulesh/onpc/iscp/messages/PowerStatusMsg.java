@@ -49,9 +49,9 @@ public class PowerStatusMsg extends ZonedMessage
 
     private PowerStatus powerStatus = PowerStatus.STB;
 
-    PowerStatusMsg(EISCPMessage raw) throws Exception
+    PowerStatusMsg(EISCPMessage raw, int zoneIndex) throws Exception
     {
-        super(raw, ZONE_COMMANDS);
+        super(raw, zoneIndex);
         powerStatus = (PowerStatus) searchParameter(data, PowerStatus.values(), powerStatus);
     }
 
@@ -13,9 +13,6 @@
 
 package com.mkulesh.onpc.iscp.messages;
 
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
-
 import com.mkulesh.onpc.iscp.EISCPMessage;
 import com.mkulesh.onpc.iscp.ISCPMessage;
 import com.mkulesh.onpc.utils.Logging;
@@ -27,7 +24,6 @@ import org.w3c.dom.Node;
 
 import java.io.ByteArrayInputStream;
 import java.io.InputStream;
-import java.net.URL;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -51,12 +47,14 @@ public class ReceiverInformationMsg extends ISCPMessage
         final String id;
         final String name;
         final int volumeStep;
+        final int volMax; // the maximum volume in dB, zero if unknown
 
         Zone(Element e)
         {
             id = e.getAttribute("id").toUpperCase();
             name = e.getAttribute("name");
             volumeStep = e.hasAttribute("volstep") ? Integer.parseInt(e.getAttribute("volstep")) : 0;
+            volMax = e.hasAttribute("volmax") ? Integer.parseInt(e.getAttribute("volmax")) : 0;
         }
 
         public Zone(final String id, final String name, final int volumeStep)
@@ -64,6 +62,7 @@ public class ReceiverInformationMsg extends ISCPMessage
             this.id = id;
             this.name = name;
             this.volumeStep = volumeStep;
+            this.volMax = 0;
         }
 
         public String getName()
@@ -76,10 +75,15 @@ public class ReceiverInformationMsg extends ISCPMessage
             return volumeStep;
         }
 
+        public int getVolMax()
+        {
+            return volMax;
+        }
+
         @Override
         public String toString()
         {
-            return id + ": " + name + ", volumeStep=" + volumeStep;
+            return id + ": " + name + ", volumeStep=" + volumeStep + ", volMax=" + volMax;
         }
     }
 
@@ -147,17 +151,30 @@ public class ReceiverInformationMsg extends ISCPMessage
 
     private String deviceId;
     private final HashMap<String, String> deviceProperties = new HashMap<>();
-    private Bitmap deviceCover;
     private final HashMap<String, String> networkServices = new HashMap<>();
     private final List<Zone> zones = new ArrayList<>();
     private final List<Selector> deviceSelectors = new ArrayList<>();
     private final Set<String> controlList = new HashSet<>();
+    private boolean parsed = false;
 
     ReceiverInformationMsg(EISCPMessage raw) throws Exception
     {
         super(raw);
         deviceId = "";
-        deviceCover = null;
+    }
+
+    /**
+     * Creates the message from a previously received NRI document
+     */
+    public ReceiverInformationMsg(final String data)
+    {
+        super(0, data);
+        deviceId = "";
+    }
+
+    public String getDeviceId()
+    {
+        return deviceId;
     }
 
     public Map<String, String> getDeviceProperties()
@@ -193,8 +210,17 @@ public class ReceiverInformationMsg extends ISCPMessage
         return CODE + "[XML<" + Integer.toString(data.length()) + ">]";
     }
 
+    /**
+     * Returns true if the document is already parsed, for example outside of the state thread
+     */
+    public boolean isParsed()
+    {
+        return parsed;
+    }
+
     public void parseXml() throws Exception
     {
+        parsed = false;
         deviceProperties.clear();
         networkServices.clear();
         zones.clear();
@@ -292,6 +318,8 @@ public class ReceiverInformationMsg extends ISCPMessage
             }
         }
 
+        parsed = true;
+
         for (Map.Entry<String, String> p : deviceProperties.entrySet())
         {
             Logging.info(this, "    Property: " + p.getKey() + "=" + p.getValue());
@@ -312,18 +340,6 @@ public class ReceiverInformationMsg extends ISCPMessage
         {
             Logging.info(this, "    Control: " + s);
         }
-
-        if (deviceProperties.containsKey("modeliconurl"))
-        {
-            final URL url = new URL(deviceProperties.get("modeliconurl"));
-            Logging.info(this, "loading image from URL: " + url.toString());
-            byte[] bytes = Utils.streamToByteArray(url.openConnection().getInputStream());
-            deviceCover = BitmapFactory.decodeByteArray(bytes, 0, bytes.length);
-            if (deviceCover == null)
-            {
-                Logging.info(this, "can not decode image");
-            }
-        }
         stream.close();
     }
 }
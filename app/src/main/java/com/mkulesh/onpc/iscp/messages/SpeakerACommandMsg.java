@@ -59,9 +59,9 @@ public class SpeakerACommandMsg extends ZonedMessage
 
     private final Status status;
 
-    SpeakerACommandMsg(EISCPMessage raw) throws Exception
+    SpeakerACommandMsg(EISCPMessage raw, int zoneIndex) throws Exception
     {
-        super(raw, ZONE_COMMANDS);
+        super(raw, zoneIndex);
         status = (Status) searchParameter(data, Status.values(), Status.NONE);
     }
 
@@ -59,9 +59,9 @@ public class SpeakerBCommandMsg extends ZonedMessage
 
     private final Status status;
 
-    SpeakerBCommandMsg(EISCPMessage raw) throws Exception
+    SpeakerBCommandMsg(EISCPMessage raw, int zoneIndex) throws Exception
     {
-        super(raw, ZONE_COMMANDS);
+        super(raw, zoneIndex);
         status = (Status) searchParameter(data, Status.values(), Status.NONE);
     }
 
@@ -26,18 +26,21 @@ public class TimeInfoMsg extends ISCPMessage
     /*
      * (Elapsed time/Track Time Max 99:59:59. If time is unknown, this response is --:--)
      */
-    private String currentTime, maxTime;
+    private final String currentTime, maxTime;
+    private final int currentSeconds, maxSeconds;
 
     TimeInfoMsg(EISCPMessage raw) throws Exception
     {
         super(raw);
-        final String[] pars = data.split(PAR_SEP);
-        if (pars.length != 2)
+        final int sep = data.indexOf(PAR_SEP);
+        if (sep < 0 || data.indexOf(PAR_SEP, sep + 1) >= 0)
         {
             throw new Exception("Can not find parameter split character in message " + raw.toString());
         }
-        currentTime = pars[0];
-        maxTime = pars[1];
+        currentTime = data.substring(0, sep);
+        maxTime = data.substring(sep + 1);
+        currentSeconds = toSeconds(data, 0, sep);
+        maxSeconds = toSeconds(data, sep + 1, data.length());
     }
 
     public String getCurrentTime()
@@ -50,6 +53,44 @@ public class TimeInfoMsg extends ISCPMessage
         return maxTime;
     }
 
+    public int getCurrentSeconds()
+    {
+        return currentSeconds;
+    }
+
+    public int getMaxSeconds()
+    {
+        return maxSeconds;
+    }
+
+    /**
+     * Converts the time given as hh:mm:ss or mm:ss into seconds; returns -1 if the time is unknown
+     */
+    private static int toSeconds(final String s, int start, int end)
+    {
+        int seconds = 0, value = 0, digits = 0;
+        for (int i = start; i < end; i++)
+        {
+            final char c = s.charAt(i);
+            if (c >= '0' && c <= '9')
+            {
+                value = 10 * value + (c - '0');
+                digits++;
+            }
+            else if (c == ':' && digits > 0)
+            {
+                seconds = 60 * seconds + value;
+                value = 0;
+                digits = 0;
+            }
+            else
+            {
+                return -1;
+            }
+        }
+        return digits > 0 ? 60 * seconds + value : -1;
+    }
+
     @Override
     public String toString()
     {
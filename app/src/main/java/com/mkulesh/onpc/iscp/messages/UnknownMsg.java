@@ -0,0 +1,42 @@
+/*
+ * Copyright (C) 2019. Mikhail Kulesh
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details. You should have received a copy of the GNU General
+ * Public License along with this program.
+ */
+
+package com.mkulesh.onpc.iscp.messages;
+
+import com.mkulesh.onpc.iscp.EISCPMessage;
+import com.mkulesh.onpc.iscp.ISCPMessage;
+
+/*
+ * A message with a code that is not supported by the application
+ */
+public class UnknownMsg extends ISCPMessage
+{
+    private final String code;
+
+    UnknownMsg(EISCPMessage raw) throws Exception
+    {
+        super(raw);
+        code = raw.getCode();
+    }
+
+    public String getCode()
+    {
+        return code;
+    }
+
+    @Override
+    public String toString()
+    {
+        return code + "[UNKNOWN; " + data + "]";
+    }
+}
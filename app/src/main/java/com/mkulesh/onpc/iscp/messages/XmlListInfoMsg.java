@@ -13,21 +13,17 @@
 
 package com.mkulesh.onpc.iscp.messages;
 
+import android.util.Xml;
+
 import com.mkulesh.onpc.iscp.EISCPMessage;
 import com.mkulesh.onpc.iscp.ISCPMessage;
-import com.mkulesh.onpc.utils.Utils;
+import com.mkulesh.onpc.utils.HexCodec;
 
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
+import org.xmlpull.v1.XmlPullParser;
 
-import java.io.ByteArrayInputStream;
-import java.io.InputStream;
+import java.io.StringReader;
 import java.util.List;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-
 /*
  * NET/USB List Info(All item, need processing XML data, for Network Control Only)
  */
@@ -61,18 +57,41 @@ public class XmlListInfoMsg extends ISCPMessage
 
     private final UiType uiType;
     private final String rawXml;
+    private int itemsOffset = 0;
+    private int totalItems = -1;
 
     XmlListInfoMsg(EISCPMessage raw) throws Exception
     {
         super(raw);
         // Format: "tzzzzsurr<.....>"
         responceType = data.charAt(0);
-        sequenceNumber = Integer.parseInt(data.substring(1, 5), 16);
+        sequenceNumber = HexCodec.decode(data, 1, 5);
         status = data.charAt(5);
         uiType = (UiType) searchParameter(data.charAt(6), UiType.values(), UiType.LIST);
         rawXml = data.substring(9);
     }
 
+    public int getSequenceNumber()
+    {
+        return sequenceNumber;
+    }
+
+    /**
+     * Index of the first item returned by the last parseXml call
+     */
+    public int getItemsOffset()
+    {
+        return itemsOffset;
+    }
+
+    /**
+     * Number of items in the whole list reported by the last parseXml call, or -1 if unknown
+     */
+    public int getTotalItems()
+    {
+        return totalItems;
+    }
+
     @Override
     public String toString()
     {
@@ -85,54 +104,66 @@ public class XmlListInfoMsg extends ISCPMessage
                 + "]";
     }
 
-    public static String getListedData(int seqNumber, int layer, int startItem, int endItem)
+    /**
+     * Builds the request of numberOfItems list items beginning with startItem
+     */
+    public static String getListedData(int seqNumber, int layer, int startItem, int numberOfItems)
     {
-        return "L" + String.format("%04x", seqNumber) +
-                String.format("%02x", layer) +
-                String.format("%04x", startItem) +
-                String.format("%04x", endItem);
+        final StringBuilder res = new StringBuilder(15).append('L');
+        HexCodec.append(res, seqNumber, 4);
+        HexCodec.append(res, layer, 2);
+        HexCodec.append(res, startItem, 4);
+        HexCodec.append(res, numberOfItems, 4);
+        return res.toString();
     }
 
     public List<XmlListItemMsg> parseXml(final List<XmlListItemMsg> items, final int numberOfLayers) throws Exception
     {
         items.clear();
-        InputStream stream = new ByteArrayInputStream(rawXml.getBytes(UTF_8));
-        final DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-        final DocumentBuilder builder = factory.newDocumentBuilder();
-        final Document doc = builder.parse(stream);
-        for (Node object = doc.getDocumentElement(); object != null; object = object.getNextSibling())
+        itemsOffset = 0;
+        totalItems = -1;
+        final XmlPullParser parser = Xml.newPullParser();
+        parser.setInput(new StringReader(rawXml));
+        // Items are only collected from the first "items" element of a "response" root having status "ok"
+        boolean responseOk = false;
+        boolean itemsFound = false;
+        boolean inItems = false;
+        for (int event = parser.next(); event != XmlPullParser.END_DOCUMENT; event = parser.next())
         {
-            if (object instanceof Element)
+            final int depth = parser.getDepth();
+            if (event == XmlPullParser.END_TAG)
             {
-                final Element response = (Element) object;
-                if (!response.getTagName().equals("response") || !Utils.ensureAttribute(response, "status", "ok"))
+                if (depth == 2)
                 {
-                    continue;
+                    inItems = false;
                 }
-
-                final List<Element> itemsTop = Utils.getElements(response, "items");
-                if (itemsTop.isEmpty())
-                {
-                    continue;
-                }
-
-                // Only process the first "items" element
-                Element itemsInfo = itemsTop.get(0);
-                if (itemsInfo == null || itemsInfo.getAttribute("offset") == null || itemsInfo.getAttribute("totalitems") == null)
-                {
-                    continue;
-                }
-                int offset = Integer.parseInt(itemsInfo.getAttribute("offset"));
-                final List<Element> elements = Utils.getElements(itemsInfo, "item");
-                int id = 0;
-                for (Element element : elements)
+                continue;
+            }
+            if (event != XmlPullParser.START_TAG)
+            {
+                continue;
+            }
+            final String name = parser.getName();
+            if (depth == 1)
+            {
+                responseOk = name.equals("response") && "ok".equals(parser.getAttributeValue(null, "status"));
+            }
+            else if (depth == 2 && responseOk && !itemsFound && name.equals("items"))
+            {
+                itemsFound = true;
+                inItems = true;
+                itemsOffset = Integer.parseInt(parser.getAttributeValue(null, "offset"));
+                final String total = parser.getAttributeValue(null, "totalitems");
+                if (total != null)
                 {
-                    items.add(new XmlListItemMsg(offset + id, numberOfLayers, element));
-                    id++;
+                    totalItems = Integer.parseInt(total);
                 }
             }
+            else if (depth == 3 && inItems && name.equals("item"))
+            {
+                items.add(new XmlListItemMsg(itemsOffset + items.size(), numberOfLayers, parser));
+            }
         }
-        stream.close();
         return items;
     }
 }
@@ -16,9 +16,9 @@ package com.mkulesh.onpc.iscp.messages;
 import com.mkulesh.onpc.R;
 import com.mkulesh.onpc.iscp.EISCPMessage;
 import com.mkulesh.onpc.iscp.ISCPMessage;
-import com.mkulesh.onpc.utils.Utils;
+import com.mkulesh.onpc.utils.HexCodec;
 
-import org.w3c.dom.Element;
+import org.xmlpull.v1.XmlPullParser;
 
 public class XmlListItemMsg extends ISCPMessage
 {
@@ -57,15 +57,24 @@ public class XmlListItemMsg extends ISCPMessage
     private final Icon icon;
     private final boolean selectable;
 
-    XmlListItemMsg(final int id, final int numberOfLayers, final Element src)
+    /**
+     * Reads the item from the attributes of the current "item" start tag
+     */
+    XmlListItemMsg(final int id, final int numberOfLayers, final XmlPullParser src)
     {
         super(id, null);
         this.numberOfLayers = numberOfLayers;
-        title = src.getAttribute("title") == null ? "" : src.getAttribute("title");
-        iconType = src.getAttribute("icontype") == null ? "" : src.getAttribute("icontype");
-        iconId = src.getAttribute("iconid") == null ? Icon.UNKNOWN.getCode() : src.getAttribute("iconid");
+        title = getAttribute(src, "title", "");
+        iconType = getAttribute(src, "icontype", "");
+        iconId = getAttribute(src, "iconid", "");
         icon = (Icon) searchParameter(iconId, Icon.values(), Icon.UNKNOWN);
-        selectable = Utils.ensureAttribute(src, "selectable", "1");
+        selectable = "1".equals(src.getAttributeValue(null, "selectable"));
+    }
+
+    private static String getAttribute(final XmlPullParser src, final String name, final String defValue)
+    {
+        final String value = src.getAttributeValue(null, name);
+        return value == null ? defValue : value;
     }
 
     public XmlListItemMsg(final int id, final int numberOfLayers, final String title,
@@ -111,6 +120,16 @@ public class XmlListItemMsg extends ISCPMessage
         return selectable;
     }
 
+    public boolean isSameItem(final XmlListItemMsg other)
+    {
+        return other != null && messageId == other.messageId
+                && numberOfLayers == other.numberOfLayers
+                && title.equals(other.title)
+                && iconType.equals(other.iconType)
+                && iconId.equals(other.iconId)
+                && selectable == other.selectable;
+    }
+
     @Override
     public String toString()
     {
@@ -125,8 +144,10 @@ public class XmlListItemMsg extends ISCPMessage
     @Override
     public EISCPMessage getCmdMsg()
     {
-        final String param = "I" + String.format("%02x", getNumberOfLayers()) +
-                String.format("%04x", getMessageId()) + "----";
-        return new EISCPMessage('1', "NLA", param);
+        final StringBuilder param = new StringBuilder("I");
+        HexCodec.append(param, getNumberOfLayers(), 2);
+        HexCodec.append(param, getMessageId(), 4);
+        param.append("----");
+        return new EISCPMessage('1', "NLA", param.toString());
     }
 }
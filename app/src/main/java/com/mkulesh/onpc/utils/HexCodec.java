@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2019. Mikhail Kulesh
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details. You should have received a copy of the GNU General
+ * Public License along with this program.
+ */
+
+package com.mkulesh.onpc.utils;
+
+/**
+ * Allocation-free conversion between integers or bytes and hexadecimal digits
+ */
+public final class HexCodec
+{
+    private final static char[] DIGITS = "0123456789abcdef".toCharArray();
+    private final static char[] UPPER_DIGITS = "0123456789ABCDEF".toCharArray();
+    private final static byte[] VALUES = new byte[128];
+
+    static
+    {
+        for (int i = 0; i < VALUES.length; i++)
+        {
+            VALUES[i] = -1;
+        }
+        for (int i = 0; i < DIGITS.length; i++)
+        {
+            VALUES[DIGITS[i]] = (byte) i;
+            VALUES[Character.toUpperCase(DIGITS[i])] = (byte) i;
+        }
+    }
+
+    /**
+     * Appends the value like String.format("%0<digits>x", value) for values that fit into the given digits
+     */
+    public static StringBuilder append(final StringBuilder sb, int value, final int digits)
+    {
+        return append(sb, value, digits, DIGITS);
+    }
+
+    /**
+     * Appends the value like String.format("%0<digits>X", value) for values that fit into the given digits
+     */
+    public static StringBuilder appendUpperCase(final StringBuilder sb, int value, final int digits)
+    {
+        return append(sb, value, digits, UPPER_DIGITS);
+    }
+
+    private static StringBuilder append(final StringBuilder sb, int value, final int digits, final char[] alphabet)
+    {
+        for (int shift = 4 * (digits - 1); shift >= 0; shift -= 4)
+        {
+            sb.append(alphabet[(value >>> shift) & 0xF]);
+        }
+        return sb;
+    }
+
+    private static int digit(final CharSequence s, final int index)
+    {
+        final char c = s.charAt(index);
+        final int v = c < VALUES.length ? VALUES[c] : -1;
+        if (v < 0)
+        {
+            throw new NumberFormatException("Invalid hex character '" + c + "' at position " + index);
+        }
+        return v;
+    }
+
+    /**
+     * Parses the hex digits between start (inclusive) and end (exclusive) like Integer.parseInt(s, 16)
+     */
+    public static int decode(final CharSequence s, final int start, final int end)
+    {
+        if (start >= end || end > s.length())
+        {
+            throw new NumberFormatException("Invalid hex range [" + start + ", " + end + ")");
+        }
+        int res = 0;
+        for (int i = start; i < end; i++)
+        {
+            res = (res << 4) | digit(s, i);
+        }
+        return res;
+    }
+
+    public static int decode(final CharSequence s)
+    {
+        return decode(s, 0, s.length());
+    }
+
+    /**
+     * Converts the pairs of hex digits between start and end into bytes written into dst starting at offset.
+     * A trailing single digit is ignored. Returns the number of written bytes
+     */
+    public static int decodeBytes(final CharSequence s, final int start, final int end, final byte[] dst, final int offset)
+    {
+        final int length = (end - start) / 2;
+        for (int i = 0; i < length; i++)
+        {
+            final int j = start + 2 * i;
+            dst[offset + i] = (byte) ((digit(s, j) << 4) | digit(s, j + 1));
+        }
+        return length;
+    }
+}
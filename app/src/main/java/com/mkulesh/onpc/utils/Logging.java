@@ -15,6 +15,9 @@ package com.mkulesh.onpc.utils;
 
 public final class Logging
 {
+    // Shall be enabled together with the output below; allows to skip building of log strings
+    public final static boolean ENABLED = false;
+
     public static void info(Object o, String text)
     {
         //Log.d("onpc", o.getClass().getSimpleName() + ": " + text);
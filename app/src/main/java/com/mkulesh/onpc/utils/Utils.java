@@ -50,13 +50,6 @@ import java.util.List;
 
 public class Utils
 {
-    public static byte[] catBuffer(byte[] bytes, int offset, int length)
-    {
-        final byte[] newBytes = new byte[length];
-        System.arraycopy(bytes, offset, newBytes, 0, length);
-        return newBytes;
-    }
-
     @SuppressWarnings("deprecation")
     @SuppressLint("NewApi")
     public static Drawable getDrawable(Context context, int icon)
@@ -214,20 +207,10 @@ public class Utils
         return false;
     }
 
-    public static int timeToSeconds(final String timestampStr)
+    @SuppressLint("DefaultLocale")
+    public static String secondsToTime(int seconds)
     {
-        try
-        {
-            String[] tokens = timestampStr.split(":");
-            int hours = Integer.parseInt(tokens[0]);
-            int minutes = Integer.parseInt(tokens[1]);
-            int seconds = Integer.parseInt(tokens[2]);
-            return 3600 * hours + 60 * minutes + seconds;
-        }
-        catch (Exception ex)
-        {
-            return -1;
-        }
+        return String.format("%02d:%02d:%02d", seconds / 3600, (seconds / 60) % 60, seconds % 60);
     }
 
     /**